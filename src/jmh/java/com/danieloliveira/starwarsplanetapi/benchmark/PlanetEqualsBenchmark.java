@@ -0,0 +1,61 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanetEqualsBenchmark {
+    @Param("100000")
+    private int planets;
+
+    private Planet planet;
+    private Planet copy;
+    private Planet other;
+    // cada planeta aparece duas vezes, como cópias diferentes com os mesmos valores
+    private List<Planet> duplicated;
+
+    @Setup
+    public void setUp() {
+        planet = new Planet(1L, "Tatooine", "arid", "desert");
+        copy = new Planet(1L, "Tatooine", "arid", "desert");
+        other = new Planet(2L, "Alderaan", "temperate", "grasslands, mountains");
+
+        duplicated = new ArrayList<>(planets * 2);
+        for (long i = 0; i < planets; i++) {
+            duplicated.add(new Planet(i, "planet-" + i, "arid", "desert"));
+            duplicated.add(new Planet(i, "planet-" + i, "arid", "desert"));
+        }
+    }
+
+    @Benchmark
+    public boolean equalCopies() {
+        return planet.equals(copy);
+    }
+
+    @Benchmark
+    public boolean differentPlanets() {
+        return planet.equals(other);
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return planet.hashCode();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Set<Planet> dedupe() {
+        return new HashSet<>(duplicated);
+    }
+}
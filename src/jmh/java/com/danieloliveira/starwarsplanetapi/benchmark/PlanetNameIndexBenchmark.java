@@ -0,0 +1,75 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetNameIndex;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetNameIndexProperties;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetNameMatch;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    busca de autocompletar com planets nomes no índice
+    os nomes são montados com sílabas, então muitos compartilham prefixos e a busca com erro tem vários galhos para percorrer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanetNameIndexBenchmark {
+    private static final String[] SYLLABLES = {"ta", "to", "oi", "ne", "al", "de", "ra", "an", "ho", "th",
+            "da", "go", "ba", "ka", "mi", "no", "ro", "su", "ve", "zi"};
+
+    @Param({"100000", "500000"})
+    private int planets;
+
+    private PlanetNameIndex planetNameIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:jmh-name-index;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS planets (id BIGINT PRIMARY KEY, name VARCHAR(255))");
+        planetNameIndex = new PlanetNameIndex(jdbcTemplate, new PlanetNameIndexProperties(Duration.ofHours(1)));
+        for (int id = 1; id <= planets; id++) {
+            planetNameIndex.add((long) id, name(id));
+        }
+        planetNameIndex.search("warm", 10);
+    }
+
+    @Benchmark
+    public List<PlanetNameMatch> shortPrefix() {
+        return planetNameIndex.search("ta", 10);
+    }
+
+    @Benchmark
+    public List<PlanetNameMatch> prefix() {
+        return planetNameIndex.search("tatoal", 10);
+    }
+
+    @Benchmark
+    public List<PlanetNameMatch> prefixWithTypo() {
+        return planetNameIndex.search("tatoxlde", 10);
+    }
+
+    @Benchmark
+    public List<PlanetNameMatch> noMatch() {
+        return planetNameIndex.search("qwertyuiop", 10);
+    }
+
+    // o id escrito na base 20, uma sílaba por dígito; acima de 160 mil planetas os nomes ganham mais uma sílaba
+    private static String name(int id) {
+        StringBuilder name = new StringBuilder();
+        for (int value = id; value > 0; value /= SYLLABLES.length) {
+            name.append(SYLLABLES[value % SYLLABLES.length]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.StarwarsPlanetApiApplication;
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetBatchService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    a mesma listagem de entidades dentro de uma transação de escrita e de uma readOnly
+    na de escrita o Hibernate guarda uma cópia de cada planeta e compara todas no flush do commit;
+    na readOnly não existe essa cópia nem o flush
+    para comparar a memória alocada por chamada, rode com -prof gc e olhe o gc.alloc.rate.norm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanetReadOnlyListBenchmark {
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky"};
+    private static final String[] TERRAINS = {"desert", "grasslands", "mountains", "jungle", "rainforests", "tundra", "swamp"};
+
+    @Param({"10000", "100000"})
+    private int planets;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(StarwarsPlanetApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh-readonly;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--logging.level.root=WARN");
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        context.getBean(PlanetBatchService.class).createAll(generate(planets));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Planet> listInReadWriteTransaction() {
+        return readWrite.execute(status -> listAll());
+    }
+
+    @Benchmark
+    public List<Planet> listInReadOnlyTransaction() {
+        return readOnly.execute(status -> listAll());
+    }
+
+    // sem o hint read-only do PlanetRepositoryCustomImpl, para que só o tipo da transação mude entre os dois casos
+    private List<Planet> listAll() {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        return entityManager.createQuery("select p from Planet p order by p.id", Planet.class).getResultList();
+    }
+
+    private static Iterator<Planet> generate(int count) {
+        return new Iterator<>() {
+            private int next = 1;
+
+            @Override
+            public boolean hasNext() {
+                return next <= count;
+            }
+
+            @Override
+            public Planet next() {
+                int id = next++;
+                String terrain = TERRAINS[id % TERRAINS.length] + ", " + TERRAINS[(id / TERRAINS.length) % TERRAINS.length];
+                return new Planet("planet-" + id, CLIMATES[id % CLIMATES.length], terrain);
+            }
+        };
+    }
+}
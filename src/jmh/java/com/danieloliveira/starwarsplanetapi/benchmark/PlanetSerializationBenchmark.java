@@ -0,0 +1,72 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    serialização de um planeta e de listas em JSON, CBOR e Smile, com o mesmo builder que o Spring usa para os controllers
+    o tamanho de cada corpo vai para o log do fork, ao lado do tempo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanetSerializationBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(PlanetSerializationBenchmark.class);
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private Planet planet;
+    private List<Planet> planets;
+    private byte[] planetsBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        planet = new Planet(1L, "Alderaan", "temperate", "grasslands, mountains");
+        planets = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            planets.add(new Planet(id, "planet-" + id, "temperate, tropical", "jungle, rainforests"));
+        }
+        planetsBytes = objectMapper.writeValueAsBytes(planets);
+        log.info("{}: um planeta {} bytes, {} planetas {} bytes",
+                format, objectMapper.writeValueAsBytes(planet).length, size, planetsBytes.length);
+    }
+
+    @Benchmark
+    public byte[] serializePlanet() throws IOException {
+        return objectMapper.writeValueAsBytes(planet);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        return objectMapper.writeValueAsBytes(planets);
+    }
+
+    @Benchmark
+    public List<Planet> deserializeList() throws IOException {
+        return objectMapper.readValue(planetsBytes, new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.StarwarsPlanetApiApplication;
+import com.danieloliveira.starwarsplanetapi.domain.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    PlanetService.list de ponta a ponta, contra um H2 em memória populado com planets planetas
+    o contexto do Spring sobe sem servidor web, uma vez por fork
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanetServiceListBenchmark {
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky"};
+    private static final String[] TERRAINS = {"desert", "grasslands", "mountains", "jungle", "rainforests", "tundra", "swamp"};
+
+    @Param({"1000", "100000"})
+    private int planets;
+
+    private ConfigurableApplicationContext context;
+    private PlanetService planetService;
+    private PlanetRepository planetRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(StarwarsPlanetApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--logging.level.root=WARN");
+        planetService = context.getBean(PlanetService.class);
+        planetRepository = context.getBean(PlanetRepository.class);
+        context.getBean(PlanetBatchService.class).createAll(generate(planets));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Planet> listAll() {
+        return planetService.list(PlanetFilter.of(null, null));
+    }
+
+    @Benchmark
+    public List<Planet> listByTags() {
+        return planetService.list(PlanetFilter.of("mountains", "temperate"));
+    }
+
+    @Benchmark
+    public List<Planet> listByExactMatch() {
+        return planetService.list(PlanetFilter.of("mountains, tundra", "temperate", PlanetFilter.Match.EXACT));
+    }
+
+    @Benchmark
+    public List<Planet> listByExample() {
+        return planetRepository.findAll(QueryBuilder.makeQuery(new Planet("temperate", "mountains, tundra")));
+    }
+
+    // cada planeta recebe um clima e dois terrenos, para os filtros por tag terem listas de tamanhos diferentes
+    private static Iterator<Planet> generate(int count) {
+        return new Iterator<>() {
+            private int next = 1;
+
+            @Override
+            public boolean hasNext() {
+                return next <= count;
+            }
+
+            @Override
+            public Planet next() {
+                int id = next++;
+                String terrain = TERRAINS[id % TERRAINS.length] + ", " + TERRAINS[(id / TERRAINS.length) % TERRAINS.length];
+                return new Planet("planet-" + id, CLIMATES[id % CLIMATES.length], terrain);
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetSnapshot;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetSnapshotProperties;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+    leituras do catálogo em memória com planets planetas
+    são 10 climas e 1000 terrenos diferentes, então o filtro por um terreno devolve planets / 1000 planetas
+    a memória estimada do catálogo (e quanto ela daria por milhão de planetas) vai para o log do fork
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PlanetSnapshotBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(PlanetSnapshotBenchmark.class);
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky",
+            "hot", "humid", "windy", "polluted", "artificial temperate"};
+
+    @Param({"100000", "1000000"})
+    private int planets;
+
+    private PlanetSnapshot planetSnapshot;
+    private PlanetFilter oneTerrain;
+    private PlanetFilter oneTerrainAndClimate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:jmh-snapshot;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS planets");
+        jdbcTemplate.execute("CREATE TABLE planets (id BIGINT PRIMARY KEY, name VARCHAR(255), climate VARCHAR(255),"
+                + " terrain VARCHAR(255), version BIGINT, updated_at TIMESTAMP(6) WITH TIME ZONE)");
+        List<Object[]> rows = new ArrayList<>(planets);
+        for (long id = 1; id <= planets; id++) {
+            rows.add(new Object[]{id, "planet-" + id, CLIMATES[(int) (id % CLIMATES.length)], terrain(id)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO planets VALUES (?, ?, ?, ?, 0, CURRENT_TIMESTAMP)", rows);
+
+        planetSnapshot = new PlanetSnapshot(jdbcTemplate, new PlanetSnapshotProperties(true, Duration.ofHours(1)));
+        planetSnapshot.load();
+        oneTerrain = PlanetFilter.of(terrain(7), null);
+        oneTerrainAndClimate = PlanetFilter.of(terrain(7), CLIMATES[7]);
+
+        long bytes = planetSnapshot.memoryBytes();
+        log.info("{} planetas: {} bytes no catálogo, {} MB por milhão de planetas", planetSnapshot.size(), bytes,
+                String.format("%.1f", bytes * (1_000_000.0 / planets) / (1024 * 1024)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        planetSnapshot.destroy();
+    }
+
+    @Benchmark
+    public Optional<Planet> getById() {
+        return planetSnapshot.get(ThreadLocalRandom.current().nextLong(1, planets + 1));
+    }
+
+    @Benchmark
+    public Optional<Planet> getByName() {
+        return planetSnapshot.getByName("planet-" + ThreadLocalRandom.current().nextLong(1, planets + 1));
+    }
+
+    @Benchmark
+    public Optional<Planet> getByNameMissing() {
+        return planetSnapshot.getByName("naboo");
+    }
+
+    @Benchmark
+    public List<Planet> listByTerrain() {
+        return planetSnapshot.list(oneTerrain);
+    }
+
+    @Benchmark
+    public List<Planet> listByTerrainAndClimate() {
+        return planetSnapshot.list(oneTerrainAndClimate);
+    }
+
+    // duas tags de terreno por planeta, combinadas em 1000 valores diferentes
+    private static String terrain(long id) {
+        int value = (int) (id % 1000);
+        return "terrain-" + value / 40 + ", terrain-" + (25 + value % 40);
+    }
+}
@@ -0,0 +1,36 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.QueryBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Example;
+
+import java.util.concurrent.TimeUnit;
+
+// custo de montar as consultas de GET /planets, sem contar o banco (a execução fica em PlanetServiceListBenchmark)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+    private String terrain = "Grasslands, Mountains";
+    private String climate = "Temperate";
+
+    @Benchmark
+    public Example<Planet> makeQuery() {
+        return QueryBuilder.makeQuery(new Planet(climate, terrain));
+    }
+
+    @Benchmark
+    public PlanetFilter parseTagFilter() {
+        return PlanetFilter.of(terrain, climate);
+    }
+
+    @Benchmark
+    public String tagFilterWhereClause() {
+        return QueryBuilder.whereClause(PlanetFilter.of(terrain, climate), true);
+    }
+}
@@ -2,8 +2,12 @@ package com.danieloliveira.starwarsplanetapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// o R2DBC é só da variante reativa (profile Maven reactive), que traz as duas pilhas; aqui o banco é acessado pelo JPA e pelo JdbcTemplate
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ConfigurationPropertiesScan
 public class StarwarsPlanetApiApplication {
 
 	public static void main(String[] args) {
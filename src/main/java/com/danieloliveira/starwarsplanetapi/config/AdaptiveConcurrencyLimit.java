@@ -0,0 +1,86 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    limite de requisições simultâneas que se ajusta pela latência, no estilo do Gradient2 do concurrency-limits da Netflix
+    a latência de cada requisição alimenta duas médias: uma curta, que reage em poucas requisições, e uma longa, que
+    representa a latência normal. Enquanto a curta fica perto da longa o limite cresce; quando ela passa de TOLERANCE
+    vezes a longa (o banco ou o pool de conexões começou a enfileirar), o limite cai na mesma proporção
+    o limite só cresce enquanto está sendo usado, senão um período calmo o levaria ao máximo sem nenhuma prova
+
+    a atualização usa tryLock: com várias requisições terminando ao mesmo tempo, uma atualiza e as outras só descartam
+    a amostra, sem esperar; o synchronized prenderia a virtual thread
+ */
+public final class AdaptiveConcurrencyLimit {
+    private static final double TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    public boolean tryAcquire() {
+        if (inflight.incrementAndGet() > (int) limit) {
+            inflight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    // rttNanos é o tempo da requisição que terminou
+    public void release(long rttNanos) {
+        int current = inflight.getAndDecrement();
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            update(rttNanos, current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // para requisições cuja duração não representa a carga, como um stream que fica aberto enquanto o cliente lê
+    public void releaseWithoutSample() {
+        inflight.decrementAndGet();
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    // as médias começam na primeira amostra; uma latência zerada é contada como 1ns para a razão entre elas existir
+    private void update(long rttNanos, int inflightAtRelease) {
+        double rtt = Math.max(1, rttNanos);
+        shortRtt = shortRtt == 0 ? rtt : shortRtt + (rtt - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+        // depois de uma sobrecarga a média longa fica acima da normal; ela desce junto com a curta para o limite voltar a crescer
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+        if (inflightAtRelease < limit / 2) {
+            return;
+        }
+        double gradient = Math.clamp(TOLERANCE * longRtt / shortRtt, 0.5, 1.0);
+        double estimated = limit * gradient + Math.sqrt(limit);
+        limit = Math.clamp(limit * (1 - SMOOTHING) + estimated * SMOOTHING, minLimit, maxLimit);
+    }
+}
@@ -0,0 +1,30 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/*
+    CBOR e Smile são o mesmo modelo do JSON em binário: as anotações do Jackson continuam valendo e o corpo fica menor
+    e mais barato de ler e escrever, porque os números não viram texto e as strings já vêm com o tamanho na frente
+    o Spring MVC registraria os dois sozinho com a dependência no classpath, mas com um ObjectMapper próprio;
+    aqui eles usam o builder do Spring Boot, então spring.jackson.* vale para os três formatos
+    os conversores entram depois do JSON, que continua sendo a resposta quando o Accept não pede outro formato
+ */
+@Configuration
+public class BinaryFormatsConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+}
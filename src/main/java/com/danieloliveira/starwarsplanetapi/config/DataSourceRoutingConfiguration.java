@@ -0,0 +1,73 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    separa leituras e escritas entre o MySQL primário e as réplicas (planets.datasource.routing.enabled=true)
+    o LazyConnectionDataSourceProxy só pega a conexão real no primeiro comando SQL, depois que o Spring já marcou
+    a transação como readOnly, e nesse caso usa o DataSource de réplicas em vez do primário
+    como a conexão é adiada, um get que é atendido pelo cache nem chega a tirar uma conexão do pool
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "planets.datasource.routing", name = "enabled", havingValue = "true")
+public class DataSourceRoutingConfiguration {
+
+    // o pool do primário continua configurado por spring.datasource.* e spring.datasource.hikari.*
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    ReadYourWritesTracker readYourWritesTracker(DataSourceRoutingProperties properties) {
+        return new ReadYourWritesTracker(properties.readYourWrites(), properties.clientHeader(), properties.trustedProxies());
+    }
+
+    @Bean(defaultCandidate = false)
+    ReplicaDataSource replicaDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                        DataSourceRoutingProperties properties, ReadYourWritesTracker readYourWritesTracker,
+                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.replicas().size(); i++) {
+            DataSourceRoutingProperties.Replica replica = properties.replicas().get(i);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.url())
+                    .username(replica.username())
+                    .password(replica.password())
+                    .build();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setMaximumPoolSize(replica.maximumPoolSize());
+            dataSource.setReadOnly(true);
+            // o Spring Boot só instrumenta os pools que são beans, então as métricas hikaricp.* das réplicas são ligadas aqui
+            meterRegistry.ifAvailable(dataSource::setMetricRegistry);
+            replicas.add(dataSource);
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, properties, readYourWritesTracker);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
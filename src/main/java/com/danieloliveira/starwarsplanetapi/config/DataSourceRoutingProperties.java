@@ -0,0 +1,30 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/*
+    réplicas de leitura usadas pelas transações readOnly; o primário continua sendo o spring.datasource
+    maxReplicaLag igual a zero desliga a verificação de atraso e readYourWrites igual a zero desliga a leitura no primário após uma escrita
+    o cliente do readYourWrites é o usuário autenticado ou o endereço de origem; clientHeader só é lido nas requisições
+    que chegam de um dos trustedProxies
+ */
+@ConfigurationProperties("planets.datasource.routing")
+public record DataSourceRoutingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<Replica> replicas,
+        @DefaultValue("0s") Duration maxReplicaLag,
+        @DefaultValue("5s") Duration lagCheckInterval,
+        @DefaultValue("SHOW REPLICA STATUS") String lagQuery,
+        @DefaultValue("Seconds_Behind_Source") String lagColumn,
+        @DefaultValue("0s") Duration readYourWrites,
+        String clientHeader,
+        @DefaultValue Set<String> trustedProxies) {
+
+    public record Replica(String url, String username, String password, @DefaultValue("10") int maximumPoolSize) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/*
+    o LoadSheddingFilter roda só nas URLs de /planets, o actuator continua respondendo durante uma sobrecarga
+    a ordem logo depois dos filtros do Spring Boot faz a recusa acontecer antes de qualquer trabalho do Spring MVC,
+    mas depois do filtro de métricas, então as respostas 429 e 503 também aparecem em http.server.requests
+ */
+@Configuration
+public class LoadSheddingConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(LoadSheddingProperties properties,
+                                                                         ApplicationAvailability availability,
+                                                                         MeterRegistry meterRegistry) {
+        FilterRegistrationBean<LoadSheddingFilter> registration = new FilterRegistrationBean<>(
+                new LoadSheddingFilter(properties, availability, meterRegistry, System::nanoTime));
+        registration.addUrlPatterns("/planets", "/planets/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+}
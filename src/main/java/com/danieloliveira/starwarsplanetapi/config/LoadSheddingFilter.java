@@ -0,0 +1,177 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+    recusa o excesso de requisições na entrada, antes de elas esperarem por uma thread do Tomcat ou por uma conexão do Hikari
+    um cliente acima da própria taxa recebe 429; acima da taxa global ou do limite de concorrência, 503
+    as duas respostas trazem Retry-After e saem sem tocar no banco, então a sobrecarga não aumenta a latência de quem passou
+
+    a taxa só vale depois que a aplicação está pronta, para o PlanetWarmup não ser barrado
+    o limite de concorrência não vale para /planets/search, que é atendido pelo índice em memória, nem para /planets/changes,
+    cujas conexões ficam abertas por minutos sem ocupar uma thread
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LoadSheddingProperties properties;
+    private final ApplicationAvailability availability;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final TokenBucket globalBucket;
+    private final Cache<String, TokenBucket> clientBuckets;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    public LoadSheddingFilter(LoadSheddingProperties properties, ApplicationAvailability availability, MeterRegistry meterRegistry,
+                              LongSupplier clock) {
+        this.properties = properties;
+        this.availability = availability;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+
+        LoadSheddingProperties.RateLimit rateLimit = properties.rateLimit();
+        if (rateLimit.enabled()) {
+            this.globalBucket = new TokenBucket(rateLimit.globalRate(), rateLimit.globalBurst(), clock);
+            // depois de burst / rate sem requisições o bucket estaria cheio de novo, então ele pode sair do cache
+            long refill = (long) Math.ceil(rateLimit.clientBurst() / rateLimit.clientRate() * ONE_SECOND);
+            this.clientBuckets = Caffeine.newBuilder()
+                    .maximumSize(rateLimit.maxClients())
+                    .expireAfterAccess(Duration.ofNanos(Math.max(refill, ONE_SECOND)))
+                    .build();
+            Gauge.builder("planets.ratelimit.global.available", globalBucket, TokenBucket::availableTokens)
+                    .description("Tokens disponíveis no bucket global")
+                    .register(meterRegistry);
+            Gauge.builder("planets.ratelimit.clients", clientBuckets, Cache::estimatedSize)
+                    .description("Clientes com bucket próprio")
+                    .register(meterRegistry);
+        } else {
+            this.globalBucket = null;
+            this.clientBuckets = null;
+        }
+
+        LoadSheddingProperties.ConcurrencyLimit limit = properties.concurrencyLimit();
+        if (limit.enabled()) {
+            this.concurrencyLimit = new AdaptiveConcurrencyLimit(limit.initialLimit(), limit.minLimit(), limit.maxLimit());
+            Gauge.builder("planets.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                    .description("Limite atual de requisições simultâneas")
+                    .register(meterRegistry);
+            Gauge.builder("planets.concurrency.inflight", concurrencyLimit, AdaptiveConcurrencyLimit::inflight)
+                    .description("Requisições em andamento sob o limite de concorrência")
+                    .register(meterRegistry);
+        } else {
+            this.concurrencyLimit = null;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (globalBucket != null && availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            long wait = clientBuckets.get(client(request), client -> newClientBucket()).tryAcquire();
+            if (wait > 0) {
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, "client_rate", wait);
+                return;
+            }
+            wait = globalBucket.tryAcquire();
+            if (wait > 0) {
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, "global_rate", wait);
+                return;
+            }
+        }
+
+        if (concurrencyLimit == null || isUnlimited(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "concurrency", ONE_SECOND);
+            return;
+        }
+
+        long start = clock.getAsLong();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(concurrencyLimit));
+            } else {
+                concurrencyLimit.release(clock.getAsLong() - start);
+            }
+        }
+    }
+
+    private TokenBucket newClientBucket() {
+        return new TokenBucket(properties.rateLimit().clientRate(), properties.rateLimit().clientBurst(), clock);
+    }
+
+    private String client(HttpServletRequest request) {
+        if (properties.clientHeader() != null && properties.trustedProxies().contains(request.getRemoteAddr())) {
+            String client = request.getHeader(properties.clientHeader());
+            if (client != null) {
+                return client;
+            }
+        }
+        return request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : request.getRemoteAddr();
+    }
+
+    private static boolean isUnlimited(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals("/planets/search") || path.equals("/planets/changes");
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String reason, long waitNanos) throws IOException {
+        Counter.builder("planets.requests.rejected")
+                .description("Requisições recusadas pelo LoadSheddingFilter")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitNanos + ONE_SECOND - 1) / ONE_SECOND)));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(status.getReasonPhrase());
+    }
+
+    // um stream em NDJSON fica aberto enquanto o cliente lê; a vaga é liberada no fim, mas a duração não entra na média
+    private record ReleaseOnComplete(AdaptiveConcurrencyLimit concurrencyLimit) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            concurrencyLimit.releaseWithoutSample();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Set;
+
+/*
+    proteção de /planets contra sobrecarga (LoadSheddingFilter)
+    rateLimit: requisições por segundo de cada cliente e de todos juntos, com a rajada aceita acima da taxa
+    concurrencyLimit: limites do ajuste automático de requisições simultâneas que vão ao banco
+    o cliente é o usuário autenticado ou, sem login, o endereço de origem; atrás de um proxy, server.forward-headers-strategy
+    faz o Tomcat trocar o endereço de origem pelo do X-Forwarded-For quando a conexão vem de um proxy interno
+    clientHeader só é lido nas requisições que chegam de um dos trustedProxies: de qualquer outro lugar o cabeçalho é do
+    próprio cliente, que poderia mandar um valor novo a cada requisição ou gastar a cota de outro cliente
+ */
+@ConfigurationProperties("planets.load-shedding")
+public record LoadSheddingProperties(
+        @DefaultValue RateLimit rateLimit,
+        @DefaultValue ConcurrencyLimit concurrencyLimit,
+        String clientHeader,
+        @DefaultValue Set<String> trustedProxies) {
+
+    public record RateLimit(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("1000") double globalRate,
+            @DefaultValue("2000") int globalBurst,
+            @DefaultValue("100") double clientRate,
+            @DefaultValue("200") int clientBurst,
+            @DefaultValue("100000") long maxClients) {
+    }
+
+    public record ConcurrencyLimit(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("20") int initialLimit,
+            @DefaultValue("5") int minLimit,
+            @DefaultValue("200") int maxLimit) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    aquece a aplicação depois que o Tomcat sobe e antes de ela aceitar tráfego
+    o Spring Boot só muda o readiness para ACCEPTING_TRAFFIC depois que todos os ApplicationRunner terminam,
+    então /actuator/health/readiness fica OUT_OF_SERVICE durante o aquecimento e o balanceador não manda clientes
+
+    primeiro o catálogo vai para o PlanetCache e para o índice de nomes; depois cada volta faz as mesmas leituras que os
+    clientes fazem, por HTTP, para o JIT compilar o caminho inteiro (Tomcat, Jackson, Hibernate) e o buffer pool do MySQL
+    receber as páginas dos índices. As requisições do aquecimento também aparecem em http.server.requests
+ */
+@Component
+@ConditionalOnProperty(prefix = "planets.warmup", name = "enabled", havingValue = "true")
+public class PlanetWarmup implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(PlanetWarmup.class);
+
+    private final PlanetService planetService;
+    private final PlanetWarmupProperties properties;
+    private final ApplicationContext context;
+
+    public PlanetWarmup(PlanetService planetService, PlanetWarmupProperties properties, ApplicationContext context) {
+        this.planetService = planetService;
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        List<Planet> planets = planetService.preload(properties.preload());
+        long preloaded = System.nanoTime();
+
+        int requests = 0;
+        if (!planets.isEmpty() && context instanceof WebServerApplicationContext web) {
+            requests = exercise(RestClient.create("http://localhost:" + web.getWebServer().getPort()), planets, preloaded);
+        }
+        log.info("Aquecimento: {} planetas carregados em {} ms, {} requisições em {} ms", planets.size(),
+                TimeUnit.NANOSECONDS.toMillis(preloaded - start), requests, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - preloaded));
+    }
+
+    // um erro do servidor ou de conexão encerra o aquecimento, mas não impede a aplicação de subir
+    private int exercise(RestClient client, List<Planet> planets, long start) {
+        long deadline = start + properties.maxDuration().toNanos();
+        int requests = 0;
+        try {
+            for (int i = 0; i < properties.iterations() && System.nanoTime() < deadline; i++) {
+                Planet planet = planets.get(i % planets.size());
+                get(client.get().uri("/planets/{id}", planet.getId()));
+                get(client.get().uri("/planets/name/{name}", planet.getName()));
+                get(client.get().uri(builder -> builder.path("/planets")
+                        .queryParam("terrain", planet.getTerrain())
+                        .queryParam("climate", planet.getClimate())
+                        .build()).header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+                get(client.get().uri("/planets?limit=100"));
+                get(client.get().uri("/planets?fields=id,name&limit=100"));
+                get(client.get().uri("/planets/search?q={q}", planet.getName().substring(0, Math.min(4, planet.getName().length()))));
+                requests += 6;
+            }
+        } catch (RestClientException ex) {
+            log.warn("Aquecimento interrompido depois de {} requisições", requests, ex);
+        }
+        return requests;
+    }
+
+    // um 404 ou 400, como um nome que não cabe na URL, não é motivo para parar
+    private static void get(RestClient.RequestHeadersSpec<?> request) {
+        request.retrieve().onStatus(HttpStatusCode::is4xxClientError, (req, response) -> {
+        }).toBodilessEntity();
+    }
+}
@@ -0,0 +1,19 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+    aquecimento antes de a aplicação ficar pronta (planets.warmup.enabled=true)
+    preload é quantos planetas vão para o PlanetCache, iterations é quantas voltas pelos endpoints de leitura
+    e maxDuration encerra as voltas antes, para o deploy não esperar demais por um banco lento
+ */
+@ConfigurationProperties("planets.warmup")
+public record PlanetWarmupProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") int preload,
+        @DefaultValue("500") int iterations,
+        @DefaultValue("60s") Duration maxDuration) {
+}
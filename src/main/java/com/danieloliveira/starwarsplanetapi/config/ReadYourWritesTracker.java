@@ -0,0 +1,62 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Set;
+
+/*
+    guarda por um tempo quais clientes acabaram de escrever, para que as leituras seguintes deles vão ao primário
+    e não a uma réplica que talvez ainda não tenha recebido a escrita
+    o cliente é o usuário autenticado ou, sem login, o endereço de origem da requisição, como no LoadSheddingFilter
+    o cabeçalho configurado só é lido nas requisições que chegam de um dos trustedProxies: de outro lugar, qualquer um
+    poderia mandar o valor de outro cliente e fazer as leituras dele irem ao primário
+ */
+class ReadYourWritesTracker implements TransactionExecutionListener {
+    // escritas feitas fora de uma requisição, como tarefas em background, ficam todas sob a mesma chave
+    private static final String NO_CLIENT = "";
+
+    private final Cache<String, Boolean> recentWriters;
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+
+    ReadYourWritesTracker(Duration window, String clientHeader, Set<String> trustedProxies) {
+        this.recentWriters = window.isZero() ? null : Caffeine.newBuilder().expireAfterWrite(window).build();
+        this.clientHeader = clientHeader;
+        this.trustedProxies = trustedProxies;
+    }
+
+    // chamado pelo gerenciador de transações; o Spring Boot registra os TransactionExecutionListener automaticamente
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (recentWriters != null && commitFailure == null && transaction.isNewTransaction() && !transaction.isReadOnly()) {
+            recentWriters.put(currentClient(), Boolean.TRUE);
+        }
+    }
+
+    boolean recentlyWrote() {
+        return recentWriters != null && recentWriters.getIfPresent(currentClient()) != null;
+    }
+
+    private String currentClient() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return NO_CLIENT;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (clientHeader != null && trustedProxies.contains(request.getRemoteAddr())) {
+            String client = request.getHeader(clientHeader);
+            if (client != null) {
+                return client;
+            }
+        }
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? principal.getName() : request.getRemoteAddr();
+    }
+}
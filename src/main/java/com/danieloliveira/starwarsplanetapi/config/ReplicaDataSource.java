@@ -0,0 +1,119 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    DataSource das transações readOnly: distribui as conexões entre as réplicas em round-robin
+    uma réplica com atraso acima do limite sai da rotação até a próxima verificação
+    sem réplica disponível, ou logo depois de o mesmo cliente escrever, a leitura vai ao primário
+ */
+class ReplicaDataSource extends AbstractDataSource implements MeterBinder, AutoCloseable {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final DataSourceRoutingProperties properties;
+    private final ReadYourWritesTracker readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagMonitor;
+
+    ReplicaDataSource(DataSource primary, List<DataSource> replicas, DataSourceRoutingProperties properties,
+                      ReadYourWritesTracker readYourWrites) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.properties = properties;
+        this.readYourWrites = readYourWrites;
+        this.lagMonitor = properties.maxReplicaLag().isZero() ? null : startLagMonitor(properties.lagCheckInterval());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return select().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return select().getConnection(username, password);
+    }
+
+    DataSource select() {
+        if (readYourWrites.recentlyWrote()) {
+            return primary;
+        }
+        // começa de um índice diferente a cada chamada e pula as réplicas atrasadas
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica.dataSource;
+            }
+        }
+        return primary;
+    }
+
+    // o atraso é lido de cada réplica; sem linha ou com valor nulo a replicação está parada e a réplica sai da rotação
+    void checkReplicas() {
+        long maxLagSeconds = properties.maxReplicaLag().toSeconds();
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(properties.lagQuery())) {
+                Object lag = result.next() ? result.getObject(properties.lagColumn()) : null;
+                replica.healthy = lag instanceof Number seconds && seconds.longValue() <= maxLagSeconds;
+            } catch (SQLException | RuntimeException ex) {
+                // uma exceção não tratada cancelaria o agendamento, então qualquer falha só tira a réplica da rotação
+                replica.healthy = false;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("planets.datasource.replicas.healthy", replicas, list -> list.stream().filter(replica -> replica.healthy).count())
+                .description("Réplicas de leitura dentro do atraso tolerado")
+                .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // a primeira verificação roda antes da aplicação aceitar requisições, para uma réplica atrasada não ser usada na subida
+    private ScheduledExecutorService startLagMonitor(Duration interval) {
+        checkReplicas();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-lag-monitor").daemon().factory());
+        executor.scheduleWithFixedDelay(this::checkReplicas, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
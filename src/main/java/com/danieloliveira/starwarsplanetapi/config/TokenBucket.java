@@ -0,0 +1,45 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+    token bucket sem lock, no formato do GCRA (generic cell rate algorithm): em vez de contar tokens e guardar a hora da
+    última recarga, o bucket guarda um único número, o instante em que ele estaria cheio de novo
+    cada requisição empurra esse instante um intervalo (1 / rate) para frente; se ele passar de now + burst intervalos,
+    o bucket está vazio e a diferença é o tempo de espera. A atualização é um compareAndSet em um AtomicLong
+ */
+public final class TokenBucket {
+    private final long interval;
+    private final long capacity;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double rate, int burst, LongSupplier clock) {
+        this.interval = Math.max(1L, (long) (1_000_000_000L / rate));
+        this.capacity = interval * Math.max(1, burst);
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    // 0 quando a requisição pode passar; senão, quantos nanossegundos faltam para o próximo token
+    public long tryAcquire() {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public double availableTokens() {
+        long now = clock.getAsLong();
+        return (double) (now + capacity - Math.max(fullAt.get(), now)) / interval;
+    }
+}
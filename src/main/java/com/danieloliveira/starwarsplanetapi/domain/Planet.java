@@ -1,13 +1,25 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
 import com.danieloliveira.starwarsplanetapi.jacoco.ExcludeFromJacocoGeneratedReport;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
-import org.apache.commons.lang3.builder.EqualsBuilder;
 
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Objects;
+
+/*
+    climate_normalized e terrain_normalized guardam os valores em minúsculo para que os filtros usem igualdade simples
+    e o MySQL consiga usar os índices, o que não acontece com lower(climate) = lower(?)
+    o InnoDB já adiciona a chave primária no fim de cada índice secundário, então os filtros também saem ordenados por id
+ */
 @Entity
-@Table(name = "planets")
-public class Planet {
+@Table(name = "planets", indexes = {
+        @Index(name = "idx_planets_climate_terrain", columnList = "climate_normalized, terrain_normalized"),
+        @Index(name = "idx_planets_terrain", columnList = "terrain_normalized")
+})
+public class Planet implements PlanetIdentity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -24,27 +36,49 @@ public class Planet {
     @Column(nullable = false)
     private String terrain;
 
+    @Column(name = "climate_normalized")
+    private String normalizedClimate;
+
+    @Column(name = "terrain_normalized")
+    private String normalizedTerrain;
+
+    /*
+        version e updated_at alimentam o ETag e o Last-Modified das respostas
+        o Hibernate incrementa a versão a cada UPDATE, então ela também protege contra atualizações concorrentes
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public Planet() {
     }
 
     public Planet(String climate, String terrain) {
-        this.climate = climate;
-        this.terrain = terrain;
+        setClimate(climate);
+        setTerrain(terrain);
     }
 
     public Planet(String name, String climate, String terrain) {
         this.name = name;
-        this.climate = climate;
-        this.terrain = terrain;
+        setClimate(climate);
+        setTerrain(terrain);
     }
 
     public Planet(Long id, String name, String climate, String terrain) {
         this.id = id;
         this.name = name;
-        this.climate = climate;
-        this.terrain = terrain;
+        setClimate(climate);
+        setTerrain(terrain);
     }
 
+    public static String normalize(String value) {
+        return value == null ? null : value.strip().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
     public Long getId() {
         return id;
     }
@@ -67,6 +101,7 @@ public class Planet {
 
     public void setClimate(String climate) {
         this.climate = climate;
+        this.normalizedClimate = normalize(climate);
     }
 
     public String getTerrain() {
@@ -75,11 +110,64 @@ public class Planet {
 
     public void setTerrain(String terrain) {
         this.terrain = terrain;
+        this.normalizedTerrain = normalize(terrain);
     }
 
+    // ficam fora do JSON; o cliente recebe a versão pelo ETag
+    @JsonIgnore
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /*
+        garante que as colunas normalizadas acompanhem o valor original mesmo quando o Hibernate preenche os campos direto
+        e marca o horário da escrita para o Last-Modified
+     */
+    @PrePersist
+    @PreUpdate
+    void prepareColumns() {
+        this.normalizedClimate = normalize(climate);
+        this.normalizedTerrain = normalize(terrain);
+        this.updatedAt = Instant.now();
+    }
+
+    /*
+        compara os campos um a um, sem reflection, e usa os getters do outro objeto porque ele pode ser um proxy
+        do Hibernate, que é uma subclasse de Planet com os campos vazios até ser inicializado
+        as colunas normalizadas ficam de fora porque são derivadas de climate e terrain
+     */
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(obj, this);
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Planet other)) {
+            return false;
+        }
+        return Objects.equals(getId(), other.getId())
+                && Objects.equals(getName(), other.getName())
+                && Objects.equals(getClimate(), other.getClimate())
+                && Objects.equals(getTerrain(), other.getTerrain());
+    }
+
+    // usa só o nome, que é único e não muda quando o planeta é salvo, assim o hash continua o mesmo depois que o id é gerado
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getName());
     }
 
     @ExcludeFromJacocoGeneratedReport
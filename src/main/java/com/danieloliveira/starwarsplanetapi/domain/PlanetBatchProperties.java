@@ -0,0 +1,8 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("planets.batch")
+public record PlanetBatchProperties(@DefaultValue("500") int chunkSize) {
+}
@@ -0,0 +1,14 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.List;
+
+// resultado de POST /planets/batch, com um item para cada planeta recebido, na mesma ordem do corpo da requisição
+public record PlanetBatchResult(int created, int conflicts, int invalid, List<Item> items) {
+
+    public enum Status {
+        CREATED, CONFLICT, INVALID
+    }
+
+    public record Item(int index, Status status, Long id, String name, String message) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/*
+    carga em lote de planetas usando batch do JDBC
+    os planetas são lidos um a um do Iterator, validados e agrupados em blocos de planets.batch.chunk-size
+    cada bloco é gravado em uma transação com um INSERT em batch para os planetas, outro para as tags e outro para o log de mudanças
+    o id continua sendo IDENTITY: os ids gerados voltam do próprio batch, então não é preciso consultar os planetas depois
+ */
+@Service
+public class PlanetBatchService {
+    private static final String INSERT_PLANET = "INSERT INTO planets (name, climate, terrain, climate_normalized, terrain_normalized,"
+            + " version, updated_at) VALUES (?, ?, ?, ?, ?, 0, ?)";
+    private static final String INSERT_TAG = "INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final PlanetCache planetCache;
+    private final PlanetNameIndex planetNameIndex;
+    private final PlanetChangeLog planetChangeLog;
+    private final PlanetFacetCounts planetFacetCounts;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public PlanetBatchService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Validator validator,
+                              PlanetCache planetCache, PlanetNameIndex planetNameIndex, PlanetChangeLog planetChangeLog,
+                              PlanetFacetCounts planetFacetCounts, ApplicationEventPublisher eventPublisher, PlanetBatchProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.planetCache = planetCache;
+        this.planetNameIndex = planetNameIndex;
+        this.planetChangeLog = planetChangeLog;
+        this.planetFacetCounts = planetFacetCounts;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = properties.chunkSize();
+    }
+
+    public PlanetBatchResult createAll(Iterator<Planet> planets) {
+        List<PlanetBatchResult.Item> items = new ArrayList<>();
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        Set<String> names = new HashSet<>();
+        int index = 0;
+
+        while (true) {
+            // um erro no hasNext significa que o corpo da requisição não pode mais ser lido, então a carga para aqui
+            try {
+                if (!planets.hasNext()) {
+                    break;
+                }
+            } catch (RuntimeException ex) {
+                items.add(new PlanetBatchResult.Item(index, PlanetBatchResult.Status.INVALID, null, null, ex.getMessage()));
+                break;
+            }
+
+            int current = index++;
+            Planet planet;
+            try {
+                planet = planets.next();
+            } catch (RuntimeException ex) {
+                items.add(new PlanetBatchResult.Item(current, PlanetBatchResult.Status.INVALID, null, null, ex.getMessage()));
+                continue;
+            }
+
+            Set<ConstraintViolation<Planet>> violations = validator.validate(planet);
+            if (!violations.isEmpty()) {
+                items.add(new PlanetBatchResult.Item(current, PlanetBatchResult.Status.INVALID, null, planet.getName(), message(violations)));
+            } else if (!names.add(planet.getName())) {
+                items.add(conflict(current, planet));
+            } else {
+                chunk.add(new Pending(current, planet));
+                if (chunk.size() == chunkSize) {
+                    flush(chunk, items);
+                }
+            }
+        }
+        flush(chunk, items);
+
+        items.sort(Comparator.comparingInt(PlanetBatchResult.Item::index));
+        Map<PlanetBatchResult.Status, Long> counts = items.stream()
+                .collect(Collectors.groupingBy(PlanetBatchResult.Item::status, Collectors.counting()));
+        return new PlanetBatchResult(
+                counts.getOrDefault(PlanetBatchResult.Status.CREATED, 0L).intValue(),
+                counts.getOrDefault(PlanetBatchResult.Status.CONFLICT, 0L).intValue(),
+                counts.getOrDefault(PlanetBatchResult.Status.INVALID, 0L).intValue(),
+                items);
+    }
+
+    private void flush(List<Pending> chunk, List<PlanetBatchResult.Item> items) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        int first = items.size();
+        Set<String> existing = existingNames(chunk);
+        List<Pending> toInsert = new ArrayList<>(chunk.size());
+        for (Pending pending : chunk) {
+            if (existing.contains(pending.planet().getName())) {
+                items.add(conflict(pending.index(), pending.planet()));
+            } else {
+                toInsert.add(pending);
+            }
+        }
+
+        // se outro cliente gravou um dos nomes entre a verificação e o INSERT, o bloco é refeito planeta por planeta
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(toInsert));
+            toInsert.forEach(pending -> items.add(created(pending)));
+        } catch (DuplicateKeyException ex) {
+            for (Pending pending : toInsert) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(pending)));
+                    items.add(created(pending));
+                } catch (DuplicateKeyException duplicate) {
+                    items.add(conflict(pending.index(), pending.planet()));
+                }
+            }
+        }
+        chunk.clear();
+
+        // um evento por bloco, já commitado, em vez de um por planeta
+        List<Long> created = items.subList(first, items.size()).stream()
+                .filter(item -> item.status() == PlanetBatchResult.Status.CREATED)
+                .map(PlanetBatchResult.Item::id)
+                .toList();
+        if (!created.isEmpty()) {
+            eventPublisher.publishEvent(new PlanetsChangedEvent(created));
+        }
+    }
+
+    private Set<String> existingNames(List<Pending> chunk) {
+        String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+        Object[] names = chunk.stream().map(pending -> pending.planet().getName()).toArray();
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT name FROM planets WHERE name IN (" + placeholders + ")", String.class, names));
+    }
+
+    private void insert(List<Pending> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_PLANET, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Planet planet = pending.get(i).planet();
+                        ps.setString(1, planet.getName());
+                        ps.setString(2, planet.getClimate());
+                        ps.setString(3, planet.getTerrain());
+                        ps.setString(4, Planet.normalize(planet.getClimate()));
+                        ps.setString(5, Planet.normalize(planet.getTerrain()));
+                        ps.setTimestamp(6, Timestamp.from(now));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return pending.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<PlanetTag> tags = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            Planet planet = pending.get(i).planet();
+            planet.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            planet.setVersion(0L);
+            planet.setUpdatedAt(now);
+            tags.addAll(PlanetTag.of(planet));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_TAG, tags, tags.size(), (ps, tag) -> {
+            ps.setLong(1, tag.getPlanetId());
+            ps.setString(2, tag.getDimension().name());
+            ps.setString(3, tag.getTag());
+        });
+        List<Planet> planets = pending.stream().map(Pending::planet).toList();
+        planetChangeLog.created(planets);
+        // os planetas do bloco que dividem tags viram uma única soma por linha de planet_facets
+        planetFacetCounts.added(planets);
+    }
+
+    private PlanetBatchResult.Item created(Pending pending) {
+        // o nome pode estar no cache como consulta negativa, então o planeta criado substitui essa entrada
+        planetCache.put(pending.planet());
+        planetNameIndex.add(pending.planet());
+        return new PlanetBatchResult.Item(pending.index(), PlanetBatchResult.Status.CREATED, pending.planet().getId(),
+                pending.planet().getName(), null);
+    }
+
+    private static PlanetBatchResult.Item conflict(int index, Planet planet) {
+        return new PlanetBatchResult.Item(index, PlanetBatchResult.Status.CONFLICT, null, planet.getName(),
+                "A planet named " + planet.getName() + " already exists");
+    }
+
+    private static String message(Set<ConstraintViolation<Planet>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private record Pending(int index, Planet planet) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+    cache de leitura dos planetas por id e por nome
+    o cache por nome guarda apenas o id, assim as duas chaves apontam para a mesma entrada do cache por id
+    a chave do nome fica em minúsculo, como a collation da coluna name no MySQL: uma consulta negativa por tatooine
+    é substituída quando Tatooine é criado
+    um Optional vazio representa um planeta inexistente (404), que fica no cache por um tempo menor
+ */
+@Component
+public class PlanetCache implements MeterBinder {
+    private final Cache<Long, Optional<Planet>> planetsById;
+    private final Cache<String, Optional<Long>> idsByName;
+    // muda a cada remoção, para uma consulta que começou antes de um delete não guardar depois dele o planeta apagado
+    private final AtomicLong generation = new AtomicLong();
+
+    public PlanetCache(PlanetCacheProperties properties) {
+        this.planetsById = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfter(new OptionalExpiry<Long, Planet>(properties.ttl(), properties.negativeTtl()))
+                .recordStats()
+                .build();
+        this.idsByName = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfter(new OptionalExpiry<String, Long>(properties.ttl(), properties.negativeTtl()))
+                .recordStats()
+                .build();
+    }
+
+    /*
+        a consulta ao banco é feita fora do cache de propósito: o get(key, loader) do Caffeine roda o loader dentro do
+        compute do ConcurrentHashMap, que segura um lock synchronized e prende a virtual thread durante toda a chamada JDBC
+        como no PlanetListResponseCache, o resultado só é guardado se nenhuma remoção aconteceu enquanto o loader rodava
+     */
+    public Optional<Planet> get(Long id, Function<Long, Optional<Planet>> loader) {
+        Optional<Planet> planet = planetsById.getIfPresent(id);
+        if (planet != null) {
+            return planet;
+        }
+
+        long start = generation.get();
+        planet = loader.apply(id);
+        Optional<Planet> loaded = planet;
+        store(start, () -> planetsById.put(id, loaded), () -> planetsById.invalidate(id));
+        return planet;
+    }
+
+    public Optional<Planet> getByName(String name, Function<String, Optional<Planet>> loader) {
+        String key = key(name);
+        Optional<Long> id = idsByName.getIfPresent(key);
+        if (id != null) {
+            if (id.isEmpty()) {
+                return Optional.empty();
+            }
+            Optional<Planet> planet = planetsById.getIfPresent(id.get());
+            if (planet != null && planet.isPresent()) {
+                return planet;
+            }
+        }
+
+        long start = generation.get();
+        Optional<Planet> planet = loader.apply(name);
+        if (planet.isPresent()) {
+            store(start, () -> put(planet.get()), () -> evictLoaded(planet.get()));
+        } else {
+            store(start, () -> idsByName.put(key, Optional.empty()), () -> idsByName.invalidate(key));
+        }
+        return planet;
+    }
+
+    // se a geração mudou entre a consulta e o put, a remoção pode ter passado antes dele, então a entrada recém-guardada sai
+    private void store(long start, Runnable put, Runnable invalidate) {
+        if (generation.get() != start) {
+            return;
+        }
+        put.run();
+        if (generation.get() != start) {
+            invalidate.run();
+        }
+    }
+
+    private void evictLoaded(Planet planet) {
+        planetsById.invalidate(planet.getId());
+        idsByName.invalidate(key(planet.getName()));
+    }
+
+    // sobrescreve também as entradas negativas que existirem para o id ou para o nome do planeta
+    public void put(Planet planet) {
+        if (planet.getId() == null) {
+            return;
+        }
+        planetsById.put(planet.getId(), Optional.of(planet));
+        idsByName.put(key(planet.getName()), Optional.of(planet.getId()));
+    }
+
+    public void evict(Long id) {
+        generation.incrementAndGet();
+        Optional<Planet> planet = planetsById.getIfPresent(id);
+        planetsById.invalidate(id);
+        if (planet != null) {
+            planet.ifPresent(p -> idsByName.invalidate(key(p.getName())));
+        }
+    }
+
+    public void evictName(String name) {
+        generation.incrementAndGet();
+        idsByName.invalidate(key(name));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        planetsById.invalidateAll();
+        idsByName.invalidateAll();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, planetsById, "planets.byId");
+        CaffeineCacheMetrics.monitor(registry, idsByName, "planets.byName");
+    }
+
+    private static class OptionalExpiry<K, V> implements Expiry<K, Optional<V>> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        OptionalExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(K key, Optional<V> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, Optional<V> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, Optional<V> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
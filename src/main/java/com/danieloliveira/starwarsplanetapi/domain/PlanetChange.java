@@ -0,0 +1,81 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/*
+    uma linha do log de mudanças do catálogo, gravada na mesma transação da escrita do planeta
+    sequence cresce a cada mudança e é o id dos eventos de GET /planets/changes, então o cliente que se desconectou
+    continua do ponto em que parou mandando o último id recebido
+    criações e atualizações levam os dados do planeta, para o cliente não precisar buscar o planeta depois
+ */
+@Entity
+@Table(name = "planet_changes", indexes = @Index(name = "idx_planet_changes_changed_at", columnList = "changed_at"))
+public class PlanetChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long sequence;
+
+    @Column(name = "planet_id", nullable = false)
+    private Long planetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    private String name;
+
+    private String climate;
+
+    private String terrain;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    protected PlanetChange() {
+    }
+
+    public PlanetChange(Long sequence, Long planetId, Type type, String name, String climate, String terrain, Instant changedAt) {
+        this.sequence = sequence;
+        this.planetId = planetId;
+        this.type = type;
+        this.name = name;
+        this.climate = climate;
+        this.terrain = terrain;
+        this.changedAt = changedAt;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public Long getPlanetId() {
+        return planetId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getClimate() {
+        return climate;
+    }
+
+    public String getTerrain() {
+        return terrain;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,103 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    grava e lê a tabela planet_changes com JDBC, para o PlanetBatchService gravar as mudanças de um bloco em um único batch
+    as escritas não abrem transação: elas entram na transação de quem grava o planeta, que usa a mesma conexão
+    as leituras ficam sem transação e vão para o primário mesmo com as réplicas ligadas, assim o feed não anda para trás
+ */
+@Component
+public class PlanetChangeLog {
+    private static final String INSERT_CHANGE = "INSERT INTO planet_changes (planet_id, type, name, climate, terrain, changed_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_CHANGES = "SELECT sequence, planet_id, type, name, climate, terrain, changed_at"
+            + " FROM planet_changes WHERE sequence > ? ORDER BY sequence LIMIT ?";
+
+    private static final RowMapper<PlanetChange> CHANGE_ROW = (rs, rowNum) -> new PlanetChange(rs.getLong("sequence"),
+            rs.getLong("planet_id"), PlanetChange.Type.valueOf(rs.getString("type")), rs.getString("name"),
+            rs.getString("climate"), rs.getString("terrain"), rs.getTimestamp("changed_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PlanetChangeLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void created(Collection<Planet> planets) {
+        record(PlanetChange.Type.CREATED, planets);
+    }
+
+    public void updated(Planet planet) {
+        record(PlanetChange.Type.UPDATED, List.of(planet));
+    }
+
+    public void deleted(Long id) {
+        jdbcTemplate.update(INSERT_CHANGE, id, PlanetChange.Type.DELETED.name(), null, null, null, Timestamp.from(Instant.now()));
+    }
+
+    // roda antes do DELETE, na mesma transação, e registra só os ids que existem
+    public void deletedIn(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] args = new Object[ids.size() + 2];
+        args[0] = PlanetChange.Type.DELETED.name();
+        args[1] = Timestamp.from(Instant.now());
+        int i = 2;
+        for (Long id : ids) {
+            args[i++] = id;
+        }
+        jdbcTemplate.update("INSERT INTO planet_changes (planet_id, type, changed_at) SELECT id, ?, ? FROM planets"
+                + " WHERE id IN (" + placeholders + ")", args);
+    }
+
+    public List<PlanetChange> after(long sequence, int limit) {
+        return jdbcTemplate.query(SELECT_CHANGES, CHANGE_ROW, sequence, limit);
+    }
+
+    public long latest() {
+        Long latest = jdbcTemplate.queryForObject("SELECT MAX(sequence) FROM planet_changes", Long.class);
+        return latest == null ? 0 : latest;
+    }
+
+    // menor sequence ainda guardada; um cursor abaixo de earliest - 1 perdeu mudanças que a retenção já apagou
+    public long earliest() {
+        Long earliest = jdbcTemplate.queryForObject("SELECT MIN(sequence) FROM planet_changes", Long.class);
+        return earliest == null ? 0 : earliest;
+    }
+
+    /*
+        apaga as mudanças gravadas antes de before, pelo índice de changed_at e depois pela chave primária
+        a última linha fica sempre, para latest() e earliest() continuarem sabendo onde a sequence está
+     */
+    public int prune(Instant before) {
+        Long through = jdbcTemplate.queryForObject("SELECT MAX(sequence) FROM planet_changes WHERE changed_at < ?",
+                Long.class, Timestamp.from(before));
+        if (through == null) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM planet_changes WHERE sequence <= ? AND sequence < ?", through, latest());
+    }
+
+    private void record(PlanetChange.Type type, Collection<Planet> planets) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, planets, planets.size(), (ps, planet) -> {
+            ps.setLong(1, planet.getId());
+            ps.setString(2, type.name());
+            ps.setString(3, planet.getName());
+            ps.setString(4, planet.getClimate());
+            ps.setString(5, planet.getTerrain());
+            ps.setTimestamp(6, now);
+        });
+    }
+}
@@ -0,0 +1,5 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+// requested é a quantidade de ids distintos pedidos e deleted a quantidade de planetas que existiam e foram apagados
+public record PlanetDeleteResult(int requested, int deleted) {
+}
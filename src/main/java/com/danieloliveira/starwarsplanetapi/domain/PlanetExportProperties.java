@@ -0,0 +1,12 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/*
+    exportação do catálogo (PlanetExporter)
+    fetchSize: quantas linhas o driver busca do banco por vez; é o que fica em memória durante a exportação
+ */
+@ConfigurationProperties("planets.export")
+public record PlanetExportProperties(@DefaultValue("1000") int fetchSize) {
+}
@@ -0,0 +1,53 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+    lê a tabela planets inteira, ou só os planetas do filtro, e entrega linha por linha, sem criar entidades nem listas
+    o JdbcTemplate abre o ResultSet só para frente e só de leitura, e o fetchSize faz o driver buscar as linhas em blocos:
+    no MySQL, com useCursorFetch=true na URL, isso vira um cursor no servidor, então a memória não depende do tamanho da tabela
+    a transação readOnly manda a leitura para uma réplica, quando houver
+ */
+@Service
+public class PlanetExporter {
+    private static final String SELECT_PLANETS = "SELECT p.id, p.name, p.climate, p.terrain FROM planets p";
+
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(long id, String name, String climate, String terrain) throws IOException;
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // um JdbcTemplate só da exportação, para o fetchSize não valer para as outras consultas
+    public PlanetExporter(DataSource dataSource, PlanetExportProperties properties) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(properties.fetchSize());
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+    }
+
+    // um erro ao escrever, como o cliente desconectar, interrompe a leitura e fecha o ResultSet
+    @Transactional(readOnly = true)
+    public void export(PlanetFilter filter, RowWriter writer) throws IOException {
+        String sql = SELECT_PLANETS + PlanetFilterSql.where(filter, false) + " ORDER BY p.id";
+        try {
+            jdbcTemplate.query(sql, PlanetFilterSql.parameters(filter), (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+    contagem de planetas por tag de clima e de terreno, mantida a cada escrita pelo PlanetFacetCounts
+    cada linha é um par (clima, terreno) com a quantidade de planetas que têm as duas tags; ANY ('') no lugar de uma das
+    tags conta os planetas só pela outra, então (arid, '') são todos os planetas áridos
+    a chave primária (climate, terrain) responde os terrenos de um clima e o índice (terrain, climate) os climas de um terreno
+ */
+@Entity
+@Table(name = "planet_facets", indexes = @Index(name = "idx_planet_facets_terrain", columnList = "terrain, climate"))
+@IdClass(PlanetFacet.Key.class)
+public class PlanetFacet {
+
+    public static final String ANY = "";
+
+    @Id
+    private String climate;
+
+    @Id
+    private String terrain;
+
+    @Column(nullable = false)
+    private long planets;
+
+    protected PlanetFacet() {
+    }
+
+    /*
+        quanto cada linha muda quando as tags de uns planetas entram (delta 1) ou saem (delta -1)
+        um planeta conta uma vez em cada tag e em cada par de tags; Yavin IV ("temperate, tropical") entra nos dois climas
+        as chaves saem ordenadas para as transações travarem as linhas sempre na mesma ordem, sem deadlock entre elas
+     */
+    public static SortedMap<Key, Long> count(Collection<PlanetTag> tags, long delta) {
+        Map<Long, List<PlanetTag>> byPlanet = new HashMap<>();
+        tags.forEach(tag -> byPlanet.computeIfAbsent(tag.getPlanetId(), id -> new ArrayList<>()).add(tag));
+
+        SortedMap<Key, Long> counts = new TreeMap<>();
+        for (List<PlanetTag> planetTags : byPlanet.values()) {
+            List<String> climates = tags(planetTags, PlanetTag.Dimension.CLIMATE);
+            List<String> terrains = tags(planetTags, PlanetTag.Dimension.TERRAIN);
+            climates.forEach(climate -> counts.merge(new Key(climate, ANY), delta, Long::sum));
+            terrains.forEach(terrain -> counts.merge(new Key(ANY, terrain), delta, Long::sum));
+            for (String climate : climates) {
+                terrains.forEach(terrain -> counts.merge(new Key(climate, terrain), delta, Long::sum));
+            }
+        }
+        return counts;
+    }
+
+    private static List<String> tags(List<PlanetTag> tags, PlanetTag.Dimension dimension) {
+        return tags.stream().filter(tag -> tag.getDimension() == dimension).map(PlanetTag::getTag).toList();
+    }
+
+    public static class Key implements Serializable, Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing((Key key) -> key.climate).thenComparing(key -> key.terrain);
+
+        private String climate;
+        private String terrain;
+
+        public Key() {
+        }
+
+        public Key(String climate, String terrain) {
+            this.climate = climate;
+            this.terrain = terrain;
+        }
+
+        public String getClimate() {
+            return climate;
+        }
+
+        public String getTerrain() {
+            return terrain;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key other)) {
+                return false;
+            }
+            return Objects.equals(climate, other.climate) && Objects.equals(terrain, other.terrain);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(climate, terrain);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + climate + ", " + terrain + ")";
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/*
+    mantém a tabela planet_facets a cada escrita, como o PlanetChangeLog: as atualizações não abrem transação e entram
+    na transação de quem grava o planeta, então a contagem muda junto com as tags e volta atrás junto com elas
+    as leituras vão só às linhas de uma tag (ou de ANY), então o custo depende da quantidade de tags, não de planetas
+
+    cada linha é um único INSERT ... ON DUPLICATE KEY UPDATE, como no PlanetUpsertService: o par novo entra com o delta e
+    o par que já existe soma o delta, sem depender da contagem de linhas afetadas do batch (com rewriteBatchedStatements
+    o driver do MySQL pode devolver SUCCESS_NO_INFO) e sem o UPDATE e o INSERT separados, que travavam o mesmo intervalo
+    do índice em duas transações e podiam terminar em deadlock
+    um desconto de um par que não existe só aconteceria com a tabela fora de sincronia; ele entra como zero, não negativo
+    as linhas que chegam a zero ficam na tabela e saem das leituras
+ */
+@Component
+public class PlanetFacetCounts implements ApplicationRunner {
+    private static final String UPSERT_FACET = "INSERT INTO planet_facets (climate, terrain, planets) VALUES (?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE planets = planets + ?";
+    // FOR UPDATE espera um DELETE concorrente dos mesmos planetas, assim as tags de um planeta não são descontadas duas vezes
+    private static final String SELECT_TAGS = "SELECT planet_id, dimension, tag FROM planet_tags WHERE planet_id IN (%s) FOR UPDATE";
+    private static final String SELECT_CLIMATES = "SELECT climate, planets FROM planet_facets WHERE terrain = ? AND climate <> ''"
+            + " AND planets > 0 ORDER BY planets DESC, climate";
+    private static final String SELECT_TERRAINS = "SELECT terrain, planets FROM planet_facets WHERE climate = ? AND terrain <> ''"
+            + " AND planets > 0 ORDER BY planets DESC, terrain";
+
+    private static final RowMapper<PlanetTag> TAG_ROW = (rs, rowNum) -> new PlanetTag(rs.getLong("planet_id"),
+            PlanetTag.Dimension.valueOf(rs.getString("dimension")), rs.getString("tag"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PlanetFacetCounts(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // roda depois de gravar as tags dos planetas
+    public void added(Collection<Planet> planets) {
+        List<PlanetTag> tags = new ArrayList<>();
+        planets.forEach(planet -> tags.addAll(PlanetTag.of(planet)));
+        apply(PlanetFacet.count(tags, 1));
+    }
+
+    // roda antes do DELETE, enquanto as tags ainda existem; ids que não existem não têm tags e não mudam nada
+    public void removed(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        List<PlanetTag> tags = jdbcTemplate.query(SELECT_TAGS.formatted(placeholders), TAG_ROW, ids.toArray());
+        apply(PlanetFacet.count(tags, -1));
+    }
+
+    /*
+        os climas contam só os planetas com a tag de terreno pedida, e os terrenos só os planetas com a tag de clima pedida
+        sem uma das duas, a contagem daquela dimensão é a do catálogo inteiro
+     */
+    public PlanetFacets facets(String terrain, String climate) {
+        return new PlanetFacets(counts(SELECT_CLIMATES, terrain), counts(SELECT_TERRAINS, climate));
+    }
+
+    /*
+        conta tudo de novo a partir de planet_tags, em uma transação
+        na primeira subida depois da criação da tabela ela está vazia, então a contagem é montada antes do readiness
+     */
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM planet_facets");
+            jdbcTemplate.update("INSERT INTO planet_facets (climate, terrain, planets) SELECT c.tag, t.tag, COUNT(*)"
+                    + " FROM planet_tags c JOIN planet_tags t ON t.planet_id = c.planet_id AND t.dimension = 'TERRAIN'"
+                    + " WHERE c.dimension = 'CLIMATE' GROUP BY c.tag, t.tag");
+            jdbcTemplate.update("INSERT INTO planet_facets (climate, terrain, planets) SELECT tag, '', COUNT(*)"
+                    + " FROM planet_tags WHERE dimension = 'CLIMATE' GROUP BY tag");
+            jdbcTemplate.update("INSERT INTO planet_facets (climate, terrain, planets) SELECT '', tag, COUNT(*)"
+                    + " FROM planet_tags WHERE dimension = 'TERRAIN' GROUP BY tag");
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (jdbcTemplate.queryForList("SELECT planets FROM planet_facets LIMIT 1", Long.class).isEmpty()) {
+            rebuild();
+        }
+    }
+
+    private Map<String, Long> counts(String sql, String tag) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getString(1), rs.getLong(2));
+        }, tag == null ? PlanetFacet.ANY : tag);
+        return counts;
+    }
+
+    // um upsert por linha em um único batch, na ordem das chaves
+    private void apply(SortedMap<PlanetFacet.Key, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<PlanetFacet.Key, Long>> entries = new ArrayList<>(counts.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_FACET, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey().getClimate());
+            ps.setString(2, entry.getKey().getTerrain());
+            ps.setLong(3, Math.max(entry.getValue(), 0));
+            ps.setLong(4, entry.getValue());
+        });
+    }
+}
@@ -0,0 +1,7 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.Map;
+
+// resposta de GET /planets/facets: quantidade de planetas por tag, da maior para a menor
+public record PlanetFacets(Map<String, Long> climate, Map<String, Long> terrain) {
+}
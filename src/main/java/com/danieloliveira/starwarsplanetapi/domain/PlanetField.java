@@ -0,0 +1,12 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.Locale;
+
+// campos que o cliente pode pedir em fields=; o nome no JSON é o mesmo da propriedade da entidade
+public enum PlanetField {
+    ID, NAME, CLIMATE, TERRAIN;
+
+    public String property() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
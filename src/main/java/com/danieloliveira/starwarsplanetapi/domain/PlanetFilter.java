@@ -0,0 +1,35 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.Set;
+
+/*
+    filtro de GET /planets
+    ALL: o planeta precisa ter todas as tags pedidas em cada dimensão
+    ANY: basta ter uma das tags pedidas em cada dimensão
+    EXACT: compara o valor inteiro, como "grasslands, mountains", nas colunas normalizadas
+    entre terrain e climate a combinação é sempre um AND
+ */
+public record PlanetFilter(String terrain, String climate, Match match, Set<String> terrainTags, Set<String> climateTags) {
+
+    public enum Match {
+        ALL, ANY, EXACT
+    }
+
+    public static PlanetFilter of(String terrain, String climate) {
+        return of(terrain, climate, Match.ALL);
+    }
+
+    public static PlanetFilter of(String terrain, String climate, Match match) {
+        return new PlanetFilter(Planet.normalize(terrain), Planet.normalize(climate), match,
+                PlanetTag.parse(terrain), PlanetTag.parse(climate));
+    }
+
+    // um valor sem nenhuma tag, como " , ", é tratado como se o filtro não tivesse sido enviado
+    public boolean hasTerrain() {
+        return !terrainTags.isEmpty();
+    }
+
+    public boolean hasClimate() {
+        return !climateTags.isEmpty();
+    }
+}
@@ -0,0 +1,71 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    o mesmo filtro do QueryBuilder, em SQL com parâmetros nomeados, para o alias "p" da tabela planets
+    cada dimensão vira uma subconsulta em planet_tags, resolvida pelo índice (dimension, tag, planet_id)
+    usado por quem lê a tabela sem o JPA: a variante reativa (DatabaseClient) e a exportação (NamedParameterJdbcTemplate)
+ */
+public class PlanetFilterSql {
+
+    private PlanetFilterSql() {
+    }
+
+    // com keyset, o where também pede p.id > :after
+    public static String where(PlanetFilter filter, boolean keyset) {
+        List<String> predicates = new ArrayList<>();
+        if (keyset) {
+            predicates.add("p.id > :after");
+        }
+        if (filter.hasTerrain()) {
+            predicates.add(predicate(filter.match(), "terrain", PlanetTag.Dimension.TERRAIN));
+        }
+        if (filter.hasClimate()) {
+            predicates.add(predicate(filter.match(), "climate", PlanetTag.Dimension.CLIMATE));
+        }
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    // as listas de tags vão como uma coleção, que os dois clientes expandem no IN
+    public static Map<String, Object> parameters(PlanetFilter filter) {
+        Map<String, Object> parameters = new HashMap<>();
+        if (filter.hasTerrain()) {
+            put(parameters, filter.match(), "terrain", filter.terrain(), filter.terrainTags());
+        }
+        if (filter.hasClimate()) {
+            put(parameters, filter.match(), "climate", filter.climate(), filter.climateTags());
+        }
+        return parameters;
+    }
+
+    /*
+        a dimensão vai como literal no SQL: o r2dbc-h2 envia todo String como CLOB,
+        que o H2 não converte para as colunas ENUM criadas pelo Hibernate
+        o valor sai da constante do enum, nunca da requisição
+     */
+    private static String predicate(PlanetFilter.Match match, String name, PlanetTag.Dimension dimension) {
+        return switch (match) {
+            case EXACT -> "p." + name + "_normalized = :" + name;
+            case ANY -> "p.id IN (SELECT t.planet_id FROM planet_tags t WHERE t.dimension = '" + dimension.name()
+                    + "' AND t.tag IN (:" + name + "Tags))";
+            case ALL -> "p.id IN (SELECT t.planet_id FROM planet_tags t WHERE t.dimension = '" + dimension.name()
+                    + "' AND t.tag IN (:" + name + "Tags) GROUP BY t.planet_id HAVING COUNT(*) = :" + name + "TagCount)";
+        };
+    }
+
+    private static void put(Map<String, Object> parameters, PlanetFilter.Match match, String name, String value, Set<String> tags) {
+        if (match == PlanetFilter.Match.EXACT) {
+            parameters.put(name, value);
+            return;
+        }
+        parameters.put(name + "Tags", List.copyOf(tags));
+        if (match == PlanetFilter.Match.ALL) {
+            parameters.put(name + "TagCount", (long) tags.size());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+// o que a paginação e o ETag precisam de cada linha, seja ela um Planet inteiro ou só alguns campos dele
+public interface PlanetIdentity {
+
+    Long getId();
+
+    Long getVersion();
+}
@@ -0,0 +1,34 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.List;
+
+/*
+    impressão digital de uma listagem, usada como ETag sem precisar carregar os planetas
+    count e maxId mudam quando um planeta entra ou sai do filtro e a soma das versões muda a cada UPDATE
+    a soma dos ids cobre o caso de um planeta sair do filtro e outro entrar na mesma requisição
+ */
+public record PlanetListVersion(long count, long maxId, long idSum, long versionSum) {
+    public static final PlanetListVersion EMPTY = new PlanetListVersion(0, 0, 0, 0);
+
+    public static PlanetListVersion of(List<? extends PlanetIdentity> planets) {
+        PlanetListVersion version = EMPTY;
+        for (PlanetIdentity planet : planets) {
+            version = version.plus(planet.getId(), planet.getVersion());
+        }
+        return version;
+    }
+
+    // a página conta o planeta extra que indica a próxima página, assim o ETag muda quando o Link de próxima página aparece
+    public static PlanetListVersion of(PlanetPage<?> page) {
+        PlanetListVersion version = of(page.planets());
+        return page.hasNext() ? version.withNext() : version;
+    }
+
+    PlanetListVersion plus(long id, Long version) {
+        return new PlanetListVersion(count + 1, Math.max(maxId, id), idSum + id, versionSum + (version == null ? 0 : version));
+    }
+
+    PlanetListVersion withNext() {
+        return new PlanetListVersion(count + 1, maxId, idSum, versionSum);
+    }
+}
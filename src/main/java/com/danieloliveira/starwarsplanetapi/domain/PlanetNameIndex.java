@@ -0,0 +1,363 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/*
+    índice em memória dos nomes dos planetas para a busca de autocompletar
+    os nomes ficam em uma trie, sem acento e em minúsculo; a busca percorre a trie calculando a distância de edição entre
+    o texto digitado e cada prefixo, e abandona um galho assim que todos os valores da linha passam do limite de erros
+    os planetas são ordenados pela distância, depois pelo tamanho do nome, então o nome exato e os prefixos vêm primeiro
+
+    o índice é carregado da tabela na primeira busca e depois é mantido pelo PlanetService e pelo PlanetBatchService
+    a cada rebuildInterval a tabela é relida em uma trie nova, que traz os creates e removes das outras instâncias
+    as buscas rodam em paralelo com o read lock; cada create/remove pega o write lock só para mexer em um caminho da trie
+ */
+@Component
+public class PlanetNameIndex implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PlanetNameIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Comparator<PlanetNameMatch> RANKING = Comparator.comparingInt(PlanetNameMatch::distance)
+            .thenComparingInt(match -> match.name().length())
+            .thenComparing(PlanetNameMatch::name)
+            .thenComparing(PlanetNameMatch::id);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // uma releitura da tabela de cada vez
+    private final ReentrantLock rebuilder = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("planet-name-index").daemon().factory());
+    private Trie trie = new Trie();
+    // creates e removes (nome null) feitos enquanto a tabela era relida: o SELECT pode ter rodado antes do commit deles
+    private Map<Long, String> writtenDuringRebuild;
+    private volatile boolean loaded;
+
+    public PlanetNameIndex(JdbcTemplate jdbcTemplate, PlanetNameIndexProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        long interval = properties.rebuildInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::scheduledRebuild, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public List<PlanetNameMatch> search(String query, int limit) {
+        load();
+        String key = normalize(query);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        int[] firstRow = new int[key.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+        /*
+            a busca começa sem erros e só aceita mais um erro se ainda faltarem sugestões
+            como a distância é o primeiro critério da ordenação, os nomes com mais erros ficariam atrás dos que já foram achados
+            e cada erro a mais abre muito mais galhos da trie
+         */
+        Map<Long, PlanetNameMatch> matches = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Node root = trie.root;
+            for (int edits = 0; edits <= maxEdits(key.length()) && matches.size() < limit; edits++) {
+                matches.clear();
+                for (int i = 0; i < root.letters.length; i++) {
+                    search(root.children[i], root.letters[i], (char) 0, key, firstRow, null, edits, Integer.MAX_VALUE, limit, matches);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches.values().stream().sorted(RANKING).limit(limit).toList();
+    }
+
+    public void add(Planet planet) {
+        add(planet.getId(), planet.getName());
+    }
+
+    public void add(Long id, String name) {
+        if (id == null || name == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            trie.put(id, name);
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.put(id, name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            trie.delete(id);
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.put(id, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load() {
+        if (loaded) {
+            return;
+        }
+        rebuilder.lock();
+        try {
+            if (!loaded) {
+                rebuildTrie();
+            }
+        } finally {
+            rebuilder.unlock();
+        }
+    }
+
+    /*
+        a tabela é lida em uma trie nova enquanto as buscas continuam na antiga, que só é trocada no fim
+        sem transação, a consulta vai para o primário mesmo com as réplicas ligadas
+     */
+    public void rebuild() {
+        rebuilder.lock();
+        try {
+            rebuildTrie();
+        } finally {
+            rebuilder.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    // antes da primeira busca não há trie para atualizar; um erro do banco mantém a trie atual até a próxima releitura
+    private void scheduledRebuild() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao reler o índice de nomes", ex);
+        }
+    }
+
+    private void rebuildTrie() {
+        lock.writeLock().lock();
+        try {
+            writtenDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Trie fresh = new Trie();
+        boolean read = false;
+        try {
+            jdbcTemplate.query("SELECT id, name FROM planets", (RowCallbackHandler) rs -> fresh.put(rs.getLong(1), rs.getString(2)));
+            read = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (read) {
+                    writtenDuringRebuild.forEach((id, name) -> {
+                        if (name == null) {
+                            fresh.delete(id);
+                        } else {
+                            fresh.put(id, name);
+                        }
+                    });
+                    trie = fresh;
+                    loaded = true;
+                }
+                writtenDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /*
+        cada nó calcula a linha da distância de Damerau-Levenshtein (com a troca de duas letras vizinhas) a partir da linha do pai
+        o último valor da linha é a distância entre o texto digitado e o prefixo do nó; se estiver dentro do limite,
+        os nomes mais curtos abaixo do nó entram no resultado
+        um nó que não melhora a distância de um ancestral já incluído não precisa incluir nada, os nomes dele já foram vistos
+     */
+    private static void search(Node node, char letter, char previousLetter, String key, int[] previous, int[] beforePrevious,
+                               int maxEdits, int ancestorDistance, int limit, Map<Long, PlanetNameMatch> matches) {
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        int best = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = key.charAt(i - 1) == letter ? 0 : 1;
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+            if (beforePrevious != null && i > 1 && key.charAt(i - 1) == previousLetter && key.charAt(i - 2) == letter) {
+                row[i] = Math.min(row[i], beforePrevious[i - 2] + 1);
+            }
+            best = Math.min(best, row[i]);
+        }
+
+        int distance = row[row.length - 1];
+        if (distance <= maxEdits && distance < ancestorDistance) {
+            collect(node, distance, limit, matches);
+            ancestorDistance = distance;
+        }
+        if (best > maxEdits || ancestorDistance == 0) {
+            return;
+        }
+        for (int i = 0; i < node.letters.length; i++) {
+            search(node.children[i], node.letters[i], letter, key, row, previous, maxEdits, ancestorDistance, limit, matches);
+        }
+    }
+
+    // percorre a trie em largura, que devolve os nomes do mais curto para o mais longo e em ordem alfabética
+    private static void collect(Node from, int distance, int limit, Map<Long, PlanetNameMatch> matches) {
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(from);
+        int found = 0;
+        while (!queue.isEmpty() && found < limit) {
+            Node node = queue.poll();
+            if (node.entries != null) {
+                for (Entry entry : node.entries) {
+                    matches.merge(entry.id(), new PlanetNameMatch(entry.id(), entry.name(), distance),
+                            (current, candidate) -> current.distance() <= candidate.distance() ? current : candidate);
+                    found++;
+                }
+            }
+            Collections.addAll(queue, node.children);
+        }
+    }
+
+    // poucas letras digitadas não aceitam erro, senão qualquer palavra curta vira sugestão
+    static int maxEdits(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    static String normalize(String name) {
+        return MARKS.matcher(Normalizer.normalize(name.strip(), Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(Long id, String name) {
+    }
+
+    private static final class Trie {
+        private final Node root = new Node();
+        // chave de cada planeta na trie, para o remove por id achar o caminho sem consultar o banco
+        private final Map<Long, String> keysById = new HashMap<>();
+
+        void put(Long id, String name) {
+            delete(id);
+            String key = normalize(name);
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+            }
+            node.add(new Entry(id, name));
+            keysById.put(id, key);
+        }
+
+        // apaga o planeta do nó e os nós que ficaram sem planetas e sem filhos no caminho até ele
+        void delete(Long id) {
+            String key = keysById.remove(id);
+            if (key == null) {
+                return;
+            }
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length(); i++) {
+                path[i + 1] = path[i].child(key.charAt(i));
+            }
+            path[key.length()].remove(id);
+            for (int i = key.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    // os filhos ficam em arrays ordenados pela letra, que ocupam bem menos memória que um mapa por nó
+    private static final class Node {
+        private static final char[] NO_LETTERS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] letters = NO_LETTERS;
+        private Node[] children = NO_CHILDREN;
+        // nomes diferentes podem ter a mesma chave, como Hoth e hoth
+        private List<Entry> entries;
+
+        Node child(char letter) {
+            int index = Arrays.binarySearch(letters, letter);
+            return index < 0 ? null : children[index];
+        }
+
+        Node childOrCreate(char letter) {
+            int index = Arrays.binarySearch(letters, letter);
+            if (index >= 0) {
+                return children[index];
+            }
+            int position = -index - 1;
+            Node child = new Node();
+            char[] newLetters = new char[letters.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(letters, 0, newLetters, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            newLetters[position] = letter;
+            newChildren[position] = child;
+            System.arraycopy(letters, position, newLetters, position + 1, letters.length - position);
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+            letters = newLetters;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char letter) {
+            int position = Arrays.binarySearch(letters, letter);
+            if (position < 0) {
+                return;
+            }
+            char[] newLetters = new char[letters.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(letters, 0, newLetters, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(letters, position + 1, newLetters, position, letters.length - position - 1);
+            System.arraycopy(children, position + 1, newChildren, position, children.length - position - 1);
+            letters = newLetters.length == 0 ? NO_LETTERS : newLetters;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+
+        void add(Entry entry) {
+            if (entries == null) {
+                entries = new ArrayList<>(1);
+            }
+            entries.add(entry);
+        }
+
+        void remove(Long id) {
+            if (entries != null && entries.removeIf(entry -> entry.id().equals(id)) && entries.isEmpty()) {
+                entries = null;
+            }
+        }
+
+        boolean isEmpty() {
+            return entries == null && letters.length == 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+    índice de nomes da busca de autocompletar (PlanetNameIndex)
+    rebuildInterval: de quanto em quanto tempo a tabela é relida, para trazer os creates e removes feitos por outras instâncias
+ */
+@ConfigurationProperties("planets.name-index")
+public record PlanetNameIndexProperties(
+        @DefaultValue("1m") Duration rebuildInterval) {
+}
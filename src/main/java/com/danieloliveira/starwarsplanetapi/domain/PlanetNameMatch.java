@@ -0,0 +1,5 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+// sugestão da busca por nome; distance é a quantidade de letras trocadas, inseridas ou apagadas em relação ao que foi digitado
+public record PlanetNameMatch(Long id, String name, int distance) {
+}
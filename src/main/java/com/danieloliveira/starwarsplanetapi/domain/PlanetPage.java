@@ -0,0 +1,20 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.List;
+
+// nextAfter é o id do último planeta da página, ou nulo quando não existem mais planetas
+public record PlanetPage<T extends PlanetIdentity>(List<T> planets, Long nextAfter) {
+
+    // recebe um planeta a mais do que o limite, que só indica se existe uma próxima página
+    static <T extends PlanetIdentity> PlanetPage<T> of(List<T> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new PlanetPage<>(rows, null);
+        }
+        List<T> content = rows.subList(0, limit);
+        return new PlanetPage<>(content, content.getLast().getId());
+    }
+
+    public boolean hasNext() {
+        return nextAfter != null;
+    }
+}
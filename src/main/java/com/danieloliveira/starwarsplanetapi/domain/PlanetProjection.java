@@ -0,0 +1,39 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Map;
+
+/*
+    linha de uma listagem com fields=: só as colunas pedidas vêm do banco, sem criar uma entidade gerenciada
+    id e versão são lidos sempre, para o cursor e o ETag, mas só aparecem no JSON os campos pedidos
+ */
+public final class PlanetProjection implements PlanetIdentity {
+    private final Long id;
+    private final Long version;
+    private final Map<String, Object> fields;
+
+    public PlanetProjection(Long id, Long version, Map<String, Object> fields) {
+        this.id = id;
+        this.version = version;
+        this.fields = fields;
+    }
+
+    @JsonIgnore
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+}
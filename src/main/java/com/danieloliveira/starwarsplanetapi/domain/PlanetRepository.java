@@ -1,15 +1,40 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
 import org.springframework.data.domain.Example;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.query.QueryByExampleExecutor;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface PlanetRepository extends CrudRepository<Planet, Long>, QueryByExampleExecutor<Planet> {
+/*
+    as leituras rodam em transações readOnly, como o findById herdado do SimpleJpaRepository
+    com o roteamento de DataSource ligado, é essa marca que manda a consulta para uma réplica
+ */
+public interface PlanetRepository extends CrudRepository<Planet, Long>, QueryByExampleExecutor<Planet>, PlanetRepositoryCustom {
+    @Transactional(readOnly = true)
     Optional<Planet> findByName(String name);
 
     @Override
     <S extends Planet> List<S> findAll(Example<S> example);
+
+    /*
+        o deleteById do CrudRepository faz um SELECT para carregar o planeta antes do DELETE
+        aqui é um único DELETE direto no banco, que devolve quantas linhas foram apagadas
+        as tags vão junto pela chave estrangeira com ON DELETE CASCADE
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Planet p where p.id = :id")
+    int removeById(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Planet p where p.id in :ids")
+    int removeByIdIn(@Param("ids") Collection<Long> ids);
 }
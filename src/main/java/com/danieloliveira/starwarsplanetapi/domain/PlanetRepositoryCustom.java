@@ -0,0 +1,28 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// consultas com filtro dinâmico de tags, implementadas em PlanetRepositoryCustomImpl
+public interface PlanetRepositoryCustom {
+
+    List<Planet> findByFilter(PlanetFilter filter);
+
+    // paginação por keyset: usa o índice da chave primária em vez de OFFSET, então o custo não cresce com a página
+    List<Planet> findPage(PlanetFilter filter, long after, int limit);
+
+    // devolve planetas não gerenciados, assim o contexto de persistência não cresce durante o stream
+    Stream<Planet> streamByFilter(PlanetFilter filter);
+
+    // seleciona só as colunas pedidas; o resultado não passa pelo contexto de persistência nem pelo dirty checking
+    List<PlanetProjection> findProjections(PlanetFilter filter, Set<PlanetField> fields);
+
+    List<PlanetProjection> findProjectionPage(PlanetFilter filter, Set<PlanetField> fields, long after, int limit);
+
+    // agregados da listagem calculados no banco, sem trazer as linhas
+    PlanetListVersion versionOf(PlanetFilter filter);
+
+    // lê só id e versão das linhas da página, com a mesma regra de próxima página do findPage
+    PlanetListVersion versionOfPage(PlanetFilter filter, long after, int limit);
+}
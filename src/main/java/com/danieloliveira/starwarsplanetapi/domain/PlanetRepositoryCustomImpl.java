@@ -0,0 +1,122 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/*
+    todas as consultas são leituras; dentro de uma transação de escrita elas continuam participando dela
+    as listagens também levam o hint read-only, então os planetas carregados nunca passam pelo dirty checking,
+    nem quando a consulta roda dentro de uma transação de escrita
+ */
+@Transactional(readOnly = true)
+class PlanetRepositoryCustomImpl implements PlanetRepositoryCustom {
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Planet> findByFilter(PlanetFilter filter) {
+        return query("select p from Planet p", filter, false)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .getResultList();
+    }
+
+    @Override
+    public List<Planet> findPage(PlanetFilter filter, long after, int limit) {
+        return query("select p from Planet p", filter, true)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setParameter("after", after)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<Planet> streamByFilter(PlanetFilter filter) {
+        return query("select new com.danieloliveira.starwarsplanetapi.domain.Planet(p.id, p.name, p.climate, p.terrain) from Planet p", filter, false)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+    }
+
+    @Override
+    public List<PlanetProjection> findProjections(PlanetFilter filter, Set<PlanetField> fields) {
+        return projections(projectionQuery(filter, fields, false).getResultList(), fields);
+    }
+
+    @Override
+    public List<PlanetProjection> findProjectionPage(PlanetFilter filter, Set<PlanetField> fields, long after, int limit) {
+        List<Tuple> rows = projectionQuery(filter, fields, true)
+                .setParameter("after", after)
+                .setMaxResults(limit)
+                .getResultList();
+        return projections(rows, fields);
+    }
+
+    @Override
+    public PlanetListVersion versionOf(PlanetFilter filter) {
+        TypedQuery<Tuple> query = entityManager.createQuery("select count(p), coalesce(max(p.id), 0), coalesce(sum(p.id), 0),"
+                + " coalesce(sum(p.version), 0) from Planet p" + QueryBuilder.whereClause(filter, false), Tuple.class);
+        QueryBuilder.bind(query, filter);
+        Tuple result = query.getSingleResult();
+        return new PlanetListVersion(result.get(0, Long.class), result.get(1, Long.class), result.get(2, Long.class),
+                result.get(3, Long.class));
+    }
+
+    @Override
+    public PlanetListVersion versionOfPage(PlanetFilter filter, long after, int limit) {
+        TypedQuery<Tuple> query = entityManager.createQuery("select p.id, p.version from Planet p"
+                + QueryBuilder.whereClause(filter, true) + " order by p.id", Tuple.class);
+        QueryBuilder.bind(query, filter);
+        List<Tuple> rows = query.setParameter("after", after)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        PlanetListVersion version = PlanetListVersion.EMPTY;
+        for (Tuple row : rows.subList(0, Math.min(limit, rows.size()))) {
+            version = version.plus(row.get(0, Long.class), row.get(1, Long.class));
+        }
+        return rows.size() > limit ? version.withNext() : version;
+    }
+
+    // id e versão vêm sempre nas duas primeiras posições, seguidos dos campos pedidos na ordem do enum
+    private TypedQuery<Tuple> projectionQuery(PlanetFilter filter, Set<PlanetField> fields, boolean keyset) {
+        StringBuilder select = new StringBuilder("select p.id, p.version");
+        for (PlanetField field : fields) {
+            if (field != PlanetField.ID) {
+                select.append(", p.").append(field.property());
+            }
+        }
+        TypedQuery<Tuple> query = entityManager.createQuery(select + " from Planet p" + QueryBuilder.whereClause(filter, keyset)
+                + " order by p.id", Tuple.class);
+        QueryBuilder.bind(query, filter);
+        return query;
+    }
+
+    private static List<PlanetProjection> projections(List<Tuple> rows, Set<PlanetField> fields) {
+        return rows.stream().map(row -> {
+            Long id = row.get(0, Long.class);
+            Map<String, Object> values = new LinkedHashMap<>();
+            int column = 2;
+            for (PlanetField field : fields) {
+                values.put(field.property(), field == PlanetField.ID ? id : row.get(column++));
+            }
+            return new PlanetProjection(id, row.get(1, Long.class), values);
+        }).toList();
+    }
+
+    private TypedQuery<Planet> query(String select, PlanetFilter filter, boolean keyset) {
+        TypedQuery<Planet> query = entityManager.createQuery(select + QueryBuilder.whereClause(filter, keyset) + " order by p.id", Planet.class);
+        QueryBuilder.bind(query, filter);
+        return query;
+    }
+}
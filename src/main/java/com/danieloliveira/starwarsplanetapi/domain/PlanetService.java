@@ -1,38 +1,250 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
-import org.springframework.data.domain.Example;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class PlanetService {
     private final PlanetRepository planetRepository;
+    private final PlanetTagRepository planetTagRepository;
+    private final PlanetCache planetCache;
+    private final PlanetNameIndex planetNameIndex;
+    private final PlanetChangeLog planetChangeLog;
+    private final PlanetSnapshot planetSnapshot;
+    private final PlanetFacetCounts planetFacetCounts;
+    private final ApplicationEventPublisher eventPublisher;
+    // quantidade de planetas devolvida por listagem, para dimensionar páginas e o pool de conexões com dados reais
+    private final DistributionSummary listSize;
+    private final DistributionSummary pageSize;
 
-    public PlanetService(PlanetRepository planetRepository) {
+    public PlanetService(PlanetRepository planetRepository, PlanetTagRepository planetTagRepository, PlanetCache planetCache,
+                         PlanetNameIndex planetNameIndex, PlanetChangeLog planetChangeLog, PlanetSnapshot planetSnapshot,
+                         PlanetFacetCounts planetFacetCounts, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
         this.planetRepository = planetRepository;
+        this.planetTagRepository = planetTagRepository;
+        this.planetCache = planetCache;
+        this.planetNameIndex = planetNameIndex;
+        this.planetChangeLog = planetChangeLog;
+        this.planetSnapshot = planetSnapshot;
+        this.planetFacetCounts = planetFacetCounts;
+        this.eventPublisher = eventPublisher;
+        this.listSize = resultSize(meterRegistry, "list");
+        this.pageSize = resultSize(meterRegistry, "page");
     }
 
 
+    /*
+        o planeta, as tags, a linha do log de mudanças e as contagens por tag são gravados na mesma transação
+        o cache e o índice de nomes só recebem o planeta depois do commit, como no remove: antes disso outro leitor veria um
+        planeta ainda não commitado, que continuaria lá se a transação voltasse atrás
+     */
+    @Transactional
     public Planet create(Planet planet) {
-        return planetRepository.save(planet);
+        Planet created = planetRepository.save(planet);
+        planetTagRepository.saveAll(PlanetTag.of(created));
+        planetChangeLog.created(List.of(created));
+        planetFacetCounts.added(List.of(created));
+        afterCommit(() -> {
+            planetCache.put(created);
+            planetNameIndex.add(created);
+        });
+        eventPublisher.publishEvent(new PlanetsChangedEvent(List.of(created.getId())));
+        return created;
     }
 
+    /*
+        get e getByName ficam sem transação para que um acerto no cache não abra uma e não pegue uma conexão do pool
+        no cache miss, findById e findByName já rodam em transações readOnly do repositório
+        com o catálogo em memória ligado, o PlanetSnapshot responde sozinho e o PlanetCache fica de fora
+     */
     public Optional<Planet> get(Long id) {
-        return planetRepository.findById(id);
+        if (planetSnapshot.isEnabled()) {
+            return planetSnapshot.get(id);
+        }
+        return planetCache.get(id, planetRepository::findById);
     }
 
     public Optional<Planet> getByName(String name) {
-        return planetRepository.findByName(name);
+        if (planetSnapshot.isEnabled()) {
+            return planetSnapshot.getByName(name);
+        }
+        return planetCache.getByName(name, planetRepository::findByName);
     }
 
-    public List<Planet> list(String terrain, String climate) {
-        Example<Planet> query = QueryBuilder.makeQuery(new Planet(climate, terrain));
-        return planetRepository.findAll(query);
+    /*
+        as listagens rodam em transações readOnly: o Hibernate usa FlushMode.MANUAL e carrega as entidades como read-only,
+        sem guardar a cópia de cada planeta para o dirty checking, e o driver do MySQL recebe Connection.setReadOnly(true)
+        aqui sem @Transactional, como no get: o findByFilter já abre a transação readOnly, e o PlanetSnapshot não precisa de uma
+     */
+    public List<Planet> list(PlanetFilter filter) {
+        List<Planet> planets = planetSnapshot.isEnabled() ? planetSnapshot.list(filter) : planetRepository.findByFilter(filter);
+        listSize.record(planets.size());
+        return planets;
     }
 
+    // igual ao list, mas só com os campos pedidos em fields=
+    @Transactional(readOnly = true)
+    public List<PlanetProjection> list(PlanetFilter filter, Set<PlanetField> fields) {
+        List<PlanetProjection> planets = planetRepository.findProjections(filter, fields);
+        listSize.record(planets.size());
+        return planets;
+    }
+
+    // busca um planeta a mais do que o limite só para saber se existe uma próxima página
+    @Transactional(readOnly = true)
+    public PlanetPage<Planet> page(PlanetFilter filter, long after, int limit) {
+        return record(PlanetPage.of(planetRepository.findPage(filter, after, limit + 1), limit));
+    }
+
+    @Transactional(readOnly = true)
+    public PlanetPage<PlanetProjection> page(PlanetFilter filter, Set<PlanetField> fields, long after, int limit) {
+        return record(PlanetPage.of(planetRepository.findProjectionPage(filter, fields, after, limit + 1), limit));
+    }
+
+    // versão das mesmas linhas que list e page devolveriam, para responder 304 sem carregar nem serializar os planetas
+    @Transactional(readOnly = true)
+    public PlanetListVersion version(PlanetFilter filter) {
+        return planetRepository.versionOf(filter);
+    }
+
+    @Transactional(readOnly = true)
+    public PlanetListVersion version(PlanetFilter filter, long after, int limit) {
+        return planetRepository.versionOfPage(filter, after, limit);
+    }
+
+    /*
+        usado no aquecimento: os primeiros planetas vão para o cache e o índice de nomes é montado antes do primeiro cliente
+        sem @Transactional: o findPage já abre a própria transação readOnly e a carga do índice lê do primário, fora dela
+        com o catálogo em memória ligado, ele também é carregado aqui, em vez de na primeira leitura de um cliente
+     */
+    public List<Planet> preload(int limit) {
+        List<Planet> planets = planetRepository.findPage(PlanetFilter.of(null, null), 0L, limit);
+        planets.forEach(planetCache::put);
+        planetNameIndex.load();
+        if (planetSnapshot.isEnabled()) {
+            planetSnapshot.load();
+        }
+        return planets;
+    }
+
+    // mudanças do catálogo depois de sequence, para o feed de GET /planets/changes
+    public List<PlanetChange> changes(long sequence, int limit) {
+        return planetChangeLog.after(sequence, limit);
+    }
+
+    public long latestChange() {
+        return planetChangeLog.latest();
+    }
+
+    public long earliestChange() {
+        return planetChangeLog.earliest();
+    }
+
+    // retenção do log de mudanças: o que foi gravado antes de before sai da tabela
+    public int pruneChanges(Instant before) {
+        return planetChangeLog.prune(before);
+    }
+
+    // quantidade de planetas por tag de clima e de terreno, lida das contagens mantidas a cada escrita
+    @Transactional(readOnly = true)
+    public PlanetFacets facets(String terrain, String climate) {
+        return planetFacetCounts.facets(terrain, climate);
+    }
+
+    // autocompletar pelo nome, atendido só pelo índice em memória, sem ir ao banco
+    public List<PlanetNameMatch> search(String query, int limit) {
+        return planetNameIndex.search(query, limit);
+    }
+
+    // o stream precisa de uma transação aberta enquanto o cursor do JDBC estiver sendo lido
+    @Transactional(readOnly = true)
+    public void stream(PlanetFilter filter, Consumer<Planet> consumer) {
+        try (Stream<Planet> planets = planetRepository.streamByFilter(filter)) {
+            planets.forEach(consumer);
+        }
+    }
+
+    /*
+        nenhuma linha apagada quer dizer que o planeta não existe, o que vira um 404 no GeneralExceptionHandler
+        o DELETE, a linha do log de mudanças e as contagens por tag ficam na mesma transação; o cache e o índice de nomes só mudam depois
+        do commit, senão uma leitura entre a limpeza do cache e o commit guardaria de novo o planeta que está sendo apagado
+     */
+    @Transactional
     public void remove(Long id) {
-        planetRepository.deleteById(id);
+        afterCompletion(() -> planetCache.evict(id));
+        planetFacetCounts.removed(List.of(id));
+        if (planetRepository.removeById(id) == 0) {
+            throw new EmptyResultDataAccessException("No planet found with id " + id, 1);
+        }
+        planetChangeLog.deleted(id);
+        afterCommit(() -> planetNameIndex.remove(id));
+        eventPublisher.publishEvent(new PlanetsChangedEvent(List.of(id)));
+    }
+
+    // apaga todos os ids em um único DELETE; ids que não existem são ignorados e ficam de fora da contagem e do log
+    @Transactional
+    public PlanetDeleteResult removeAll(Collection<Long> ids) {
+        afterCompletion(() -> ids.forEach(planetCache::evict));
+        planetChangeLog.deletedIn(ids);
+        planetFacetCounts.removed(ids);
+        int deleted = planetRepository.removeByIdIn(ids);
+        afterCommit(() -> ids.forEach(planetNameIndex::remove));
+        eventPublisher.publishEvent(new PlanetsChangedEvent(ids));
+        return new PlanetDeleteResult(ids.size(), deleted);
+    }
+
+    // sem transação, como nos testes de unidade, a ação roda na hora
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // depois do commit ou do rollback: a limpeza do cache vale também quando o DELETE falha
+    private static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private <T extends PlanetIdentity> PlanetPage<T> record(PlanetPage<T> page) {
+        pageSize.record(page.planets().size());
+        return page;
+    }
+
+    private static DistributionSummary resultSize(MeterRegistry meterRegistry, String operation) {
+        return DistributionSummary.builder("planets.list.size")
+                .description("Planetas devolvidos por listagem")
+                .baseUnit("planets")
+                .tag("operation", operation)
+                .register(meterRegistry);
     }
 }
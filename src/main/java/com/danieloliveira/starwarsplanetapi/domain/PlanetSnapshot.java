@@ -0,0 +1,663 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/*
+    o catálogo inteiro em memória, guardado em colunas, para get, getByName e list responderem sem ir ao banco
+    ids: um long[] em ordem, achado por busca binária
+    clima e terreno: cada valor diferente vira um código de um dicionário e cada código guarda as linhas que o usam,
+    como lista ordenada enquanto o valor é raro e como bitmap quando ele é comum; o filtro escolhe no dicionário os códigos
+    que casam com as tags pedidas e percorre só as linhas deles
+    nomes: tabela de hash com endereçamento aberto que guarda o número da linha, sem um objeto por entrada; a busca ignora
+    maiúsculas e minúsculas, como a collation da coluna name no MySQL, para /planets/name/tatooine achar Tatooine
+    get e getByName só alocam o Planet da resposta; list aloca a lista e, com mais de um código, o bitmap da união
+    o PlanetSnapshotBenchmark mostra a memória por milhão de planetas e o tempo de cada leitura
+
+    a tabela é lida na primeira consulta e relida a cada rebuildInterval, que traz as escritas das outras instâncias
+    as escritas desta instância chegam pelo PlanetsChangedEvent depois do commit: as linhas desses ids são relidas do
+    primário e corrigidas no lugar, então quem acabou de escrever já lê o próprio planeta
+    durante uma releitura da tabela a escrita não espera por ela: os ids ficam anotados e são relidos quando ela termina
+ */
+@Component
+public class PlanetSnapshot implements MeterBinder, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PlanetSnapshot.class);
+    private static final String SELECT_PLANETS = "SELECT id, name, climate, terrain, version, updated_at FROM planets";
+    private static final int RELOAD_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlanetSnapshotProperties properties;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // uma releitura da tabela e as correções por id rodam uma de cada vez, então uma correção nunca sobrescreve outra mais nova
+    private final ReentrantLock writer = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("planet-snapshot").daemon().factory());
+    private Columns columns;
+    // ids escritos enquanto a tabela era relida: o SELECT pode ter rodado antes do commit deles
+    private Set<Long> writtenDuringRebuild;
+    private volatile boolean loaded;
+
+    public PlanetSnapshot(JdbcTemplate jdbcTemplate, PlanetSnapshotProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        if (properties.enabled()) {
+            long interval = properties.rebuildInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::scheduledRebuild, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled();
+    }
+
+    public Optional<Planet> get(long id) {
+        load();
+        lock.readLock().lock();
+        try {
+            int row = columns.row(id);
+            return row >= 0 && columns.isLive(row) ? Optional.of(columns.planet(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Planet> getByName(String name) {
+        load();
+        lock.readLock().lock();
+        try {
+            int row = columns.rowByName(name);
+            return row >= 0 ? Optional.of(columns.planet(row)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Planet> list(PlanetFilter filter) {
+        load();
+        lock.readLock().lock();
+        try {
+            return columns.select(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void load() {
+        if (loaded) {
+            return;
+        }
+        writer.lock();
+        try {
+            if (!loaded) {
+                rebuildColumns();
+            }
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /*
+        a tabela é lida em colunas novas enquanto as leituras continuam nas antigas, que só são trocadas no fim
+        sem transação, a consulta vai para o primário mesmo com as réplicas ligadas
+     */
+    public void rebuild() {
+        writer.lock();
+        try {
+            rebuildColumns();
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        if (!properties.enabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.addAll(event.ids());
+                return;
+            }
+            if (columns == null) {
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // outra correção ou uma releitura que acabou de começar: a correção vai para a fila do scheduler, depois dela
+        if (!writer.tryLock()) {
+            scheduler.execute(() -> scheduledReload(event.ids()));
+            return;
+        }
+        try {
+            reload(event.ids());
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns == null ? 0 : columns.count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // estimativa do heap ocupado pelas colunas, pelos nomes e pelos bitmaps
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return columns == null ? 0 : columns.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("planets.snapshot.size", this, PlanetSnapshot::size)
+                .description("Planetas no catálogo em memória")
+                .baseUnit("planets")
+                .register(registry);
+        Gauge.builder("planets.snapshot.memory", this, PlanetSnapshot::memoryBytes)
+                .description("Memória estimada do catálogo em memória")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    // um erro do banco mantém as colunas atuais até a próxima releitura
+    private void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao reler o catálogo em memória", ex);
+        }
+    }
+
+    private void scheduledReload(Collection<Long> ids) {
+        writer.lock();
+        try {
+            reload(ids);
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao reler planetas alterados no catálogo em memória", ex);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    private void rebuildColumns() {
+        lock.writeLock().lock();
+        try {
+            writtenDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Columns fresh = new Columns(columns == null ? 1024 : columns.count + columns.count / 8);
+        Set<Long> written;
+        try {
+            jdbcTemplate.query(SELECT_PLANETS + " ORDER BY id", (RowCallbackHandler) rs -> put(fresh, rs));
+        } finally {
+            lock.writeLock().lock();
+            try {
+                written = writtenDuringRebuild;
+                writtenDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            columns = fresh;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reload(written);
+    }
+
+    // os ids que não voltam do banco foram apagados
+    private void reload(Collection<Long> ids) {
+        List<Long> pending = List.copyOf(new LinkedHashSet<>(ids));
+        for (int from = 0; from < pending.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, pending.size()));
+            Columns rows = new Columns(chunk.size());
+            jdbcTemplate.query(SELECT_PLANETS + " WHERE id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    (RowCallbackHandler) rs -> put(rows, rs), chunk.toArray());
+
+            lock.writeLock().lock();
+            try {
+                for (Long id : chunk) {
+                    int row = rows.row(id);
+                    if (row >= 0) {
+                        columns.put(id, rows.names[row], rows.climate.value(rows.climates[row]), rows.terrain.value(rows.terrains[row]),
+                                rows.versions[row], rows.updatedAt[row]);
+                    } else {
+                        columns.remove(id);
+                    }
+                }
+                if (columns.needsCompaction()) {
+                    columns = columns.compacted();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void put(Columns columns, ResultSet rs) throws SQLException {
+        Timestamp updatedAt = rs.getTimestamp(6);
+        columns.put(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5),
+                updatedAt == null ? Columns.NO_TIMESTAMP : Columns.micros(updatedAt.toInstant()));
+    }
+
+    /*
+        as colunas não têm sincronização própria: o PlanetSnapshot lê com o read lock e escreve com o write lock
+        as linhas apagadas ficam marcadas fora do bitmap live até a próxima compactação, assim um remove não move as outras
+        ids que chegam fora de ordem, de transações que commitaram depois de uma com id maior, vão para o fim e são
+        procurados um a um; a compactação coloca tudo em ordem de novo
+     */
+    static final class Columns {
+        static final long NO_TIMESTAMP = Long.MIN_VALUE;
+        private static final int MAX_UNSORTED = 1024;
+
+        private long[] ids;
+        private String[] names;
+        private int[] climates;
+        private int[] terrains;
+        private long[] versions;
+        private long[] updatedAt;
+        private final BitSet live = new BitSet();
+        private final Dictionary climate = new Dictionary();
+        private final Dictionary terrain = new Dictionary();
+        // número da linha + 1 em cada posição; 0 é uma posição vazia
+        private int[] nameSlots;
+        private int usedNameSlots;
+        private long nameBytes;
+        // linhas usadas, contando as apagadas; as primeiras sorted estão em ordem de id
+        private int size;
+        private int sorted;
+        private int count;
+
+        Columns(int capacity) {
+            capacity = Math.max(capacity, 16);
+            ids = new long[capacity];
+            names = new String[capacity];
+            climates = new int[capacity];
+            terrains = new int[capacity];
+            versions = new long[capacity];
+            updatedAt = new long[capacity];
+            nameSlots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        }
+
+        int row(long id) {
+            int row = Arrays.binarySearch(ids, 0, sorted, id);
+            if (row >= 0) {
+                return row;
+            }
+            for (int i = sorted; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean isLive(int row) {
+            return live.get(row);
+        }
+
+        int rowByName(String name) {
+            int mask = nameSlots.length - 1;
+            for (int slot = hash(name) & mask; nameSlots[slot] != 0; slot = (slot + 1) & mask) {
+                int row = nameSlots[slot] - 1;
+                if (live.get(row) && names[row].equalsIgnoreCase(name)) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        Planet planet(int row) {
+            Planet planet = new Planet(ids[row], names[row], climate.value(climates[row]), terrain.value(terrains[row]));
+            planet.setVersion(versions[row]);
+            planet.setUpdatedAt(updatedAt[row] == NO_TIMESTAMP ? null : instant(updatedAt[row]));
+            return planet;
+        }
+
+        /*
+            com filtro de terreno, só as linhas dos códigos de terreno escolhidos são visitadas e o clima é conferido pelo
+            código de cada uma; sem ele, o mesmo vale para o clima
+         */
+        List<Planet> select(PlanetFilter filter) {
+            boolean[] terrainCodes = filter.hasTerrain() ? terrain.matching(filter.match(), filter.terrain(), filter.terrainTags()) : null;
+            boolean[] climateCodes = filter.hasClimate() ? climate.matching(filter.match(), filter.climate(), filter.climateTags()) : null;
+
+            List<Planet> planets = new ArrayList<>();
+            IntConsumer collect = row -> {
+                if ((terrainCodes == null || terrainCodes[terrains[row]]) && (climateCodes == null || climateCodes[climates[row]])) {
+                    planets.add(planet(row));
+                }
+            };
+            if (terrainCodes != null) {
+                terrain.forEachRow(terrainCodes, collect);
+            } else if (climateCodes != null) {
+                climate.forEachRow(climateCodes, collect);
+            } else {
+                live.stream().forEach(collect);
+            }
+            if (sorted < size) {
+                planets.sort(Comparator.comparing(Planet::getId));
+            }
+            return planets;
+        }
+
+        // grava o planeta na linha do id, que é criada no fim se ainda não existir
+        void put(long id, String name, String climateValue, String terrainValue, long version, long updated) {
+            int row = row(id);
+            boolean indexName;
+            if (row < 0) {
+                row = append(id);
+                indexName = true;
+            } else if (live.get(row)) {
+                indexName = !names[row].equalsIgnoreCase(name);
+                detach(row);
+            } else {
+                // a posição antiga do nome pode ter sumido quando a tabela de nomes cresceu
+                indexName = true;
+            }
+            names[row] = name;
+            versions[row] = version;
+            updatedAt[row] = updated;
+            climates[row] = climate.code(climateValue);
+            terrains[row] = terrain.code(terrainValue);
+            climate.rows(climates[row]).add(row);
+            terrain.rows(terrains[row]).add(row);
+            live.set(row);
+            count++;
+            nameBytes += stringBytes(name);
+            if (indexName) {
+                indexName(row);
+            }
+        }
+
+        void remove(long id) {
+            int row = row(id);
+            if (row >= 0 && live.get(row)) {
+                detach(row);
+            }
+        }
+
+        boolean needsCompaction() {
+            return size - count > Math.max(MAX_UNSORTED, size / 4) || size - sorted > MAX_UNSORTED;
+        }
+
+        // colunas novas só com as linhas vivas, em ordem de id; os valores que ninguém usa mais ficam fora dos dicionários
+        Columns compacted() {
+            Columns compacted = new Columns(count + count / 8);
+            live.stream().boxed()
+                    .sorted(Comparator.comparingLong(row -> ids[row]))
+                    .forEach(row -> compacted.put(ids[row], names[row], climate.value(climates[row]), terrain.value(terrains[row]),
+                            versions[row], updatedAt[row]));
+            return compacted;
+        }
+
+        long memoryBytes() {
+            long columns = (long) ids.length * (Long.BYTES * 3 + Integer.BYTES * 3);
+            return columns + (long) nameSlots.length * Integer.BYTES + live.size() / Byte.SIZE
+                    + nameBytes + climate.memoryBytes() + terrain.memoryBytes();
+        }
+
+        private int append(long id) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                climates = Arrays.copyOf(climates, capacity);
+                terrains = Arrays.copyOf(terrains, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                updatedAt = Arrays.copyOf(updatedAt, capacity);
+            }
+            if (sorted == size && (size == 0 || ids[size - 1] < id)) {
+                sorted++;
+            }
+            ids[size] = id;
+            return size++;
+        }
+
+        // a posição do nome continua apontando para a linha; a busca pelo nome ignora linhas que não estão em live
+        private void detach(int row) {
+            live.clear(row);
+            climate.rows(climates[row]).remove(row);
+            terrain.rows(terrains[row]).remove(row);
+            nameBytes -= stringBytes(names[row]);
+            count--;
+        }
+
+        // a tabela fica no máximo meio cheia, para as sequências de posições ocupadas continuarem curtas
+        private void indexName(int row) {
+            if ((usedNameSlots + 1) * 2 > nameSlots.length) {
+                nameSlots = new int[nameSlots.length * 2];
+                usedNameSlots = 0;
+                for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+                    if (other != row) {
+                        insertName(other);
+                    }
+                }
+            }
+            insertName(row);
+        }
+
+        private void insertName(int row) {
+            int mask = nameSlots.length - 1;
+            int slot = hash(names[row]) & mask;
+            while (nameSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = row + 1;
+            usedNameSlots++;
+        }
+
+        // o hash é do nome em minúsculas, para as grafias do mesmo nome caírem na mesma sequência de posições
+        private static int hash(String name) {
+            int hash = name.toLowerCase(Locale.ROOT).hashCode() * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+        // cabeçalho e campos da String, mais o array de bytes com um byte por letra (compact strings)
+        private static long stringBytes(String value) {
+            return 24 + ((16 + value.length() + 7) & ~7L);
+        }
+
+        static long micros(Instant instant) {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+        }
+
+        private static Instant instant(long micros) {
+            return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+        }
+    }
+
+    // valores diferentes de uma dimensão, cada um com as tags já separadas e as linhas que o usam
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<String> normalized = new ArrayList<>();
+        private final List<Set<String>> tags = new ArrayList<>();
+        private final List<Rows> rows = new ArrayList<>();
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            codes.put(value, values.size());
+            values.add(value);
+            normalized.add(Planet.normalize(value));
+            tags.add(PlanetTag.parse(value));
+            rows.add(new Rows());
+            return values.size() - 1;
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        Rows rows(int code) {
+            return rows.get(code);
+        }
+
+        // as mesmas regras do QueryBuilder, aplicadas uma vez por valor do dicionário em vez de uma vez por planeta
+        boolean[] matching(PlanetFilter.Match match, String value, Set<String> wanted) {
+            boolean[] matching = new boolean[values.size()];
+            for (int code = 0; code < matching.length; code++) {
+                matching[code] = switch (match) {
+                    case EXACT -> normalized.get(code).equals(value);
+                    case ALL -> tags.get(code).containsAll(wanted);
+                    case ANY -> !Collections.disjoint(tags.get(code), wanted);
+                };
+            }
+            return matching;
+        }
+
+        // com um único código as linhas dele já estão em ordem; com vários, a união em um bitmap coloca tudo em ordem
+        void forEachRow(boolean[] matching, IntConsumer action) {
+            int matched = 0;
+            int only = -1;
+            for (int code = 0; code < matching.length; code++) {
+                if (matching[code]) {
+                    matched++;
+                    only = code;
+                }
+            }
+            if (matched == 1) {
+                rows.get(only).forEach(action);
+            } else if (matched > 1) {
+                BitSet union = new BitSet();
+                for (int code = 0; code < matching.length; code++) {
+                    if (matching[code]) {
+                        rows.get(code).addTo(union);
+                    }
+                }
+                union.stream().forEach(action);
+            }
+        }
+
+        long memoryBytes() {
+            long bytes = 0;
+            for (int code = 0; code < values.size(); code++) {
+                bytes += rows.get(code).memoryBytes() + Columns.stringBytes(values.get(code)) * 2;
+            }
+            return bytes;
+        }
+    }
+
+    /*
+        linhas de um valor do dicionário: uma lista ordenada enquanto o valor é raro, que vira um bitmap quando a lista
+        passaria a ocupar mais que ele (32 bits por linha da lista contra 1 bit por linha da tabela até a maior delas)
+        sem isso, mil terrenos diferentes custariam mil bitmaps do tamanho da tabela
+     */
+    private static final class Rows {
+        private int[] sparse = new int[4];
+        private int size;
+        private BitSet dense;
+
+        // as linhas novas vão para o fim da tabela, então quase sempre entram no fim da lista
+        void add(int row) {
+            if (dense != null) {
+                dense.set(row);
+                return;
+            }
+            int position = size;
+            if (size > 0 && sparse[size - 1] >= row) {
+                position = Arrays.binarySearch(sparse, 0, size, row);
+                if (position >= 0) {
+                    return;
+                }
+                position = -position - 1;
+            }
+            if (size == sparse.length) {
+                sparse = Arrays.copyOf(sparse, size + (size >> 1) + 1);
+            }
+            System.arraycopy(sparse, position, sparse, position + 1, size - position);
+            sparse[position] = row;
+            size++;
+            if ((long) size * Integer.SIZE > sparse[size - 1] + 1L) {
+                dense = new BitSet(sparse[size - 1] + 1);
+                for (int i = 0; i < size; i++) {
+                    dense.set(sparse[i]);
+                }
+                sparse = null;
+                size = 0;
+            }
+        }
+
+        void remove(int row) {
+            if (dense != null) {
+                dense.clear(row);
+                return;
+            }
+            int position = Arrays.binarySearch(sparse, 0, size, row);
+            if (position >= 0) {
+                System.arraycopy(sparse, position + 1, sparse, position, size - position - 1);
+                size--;
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            if (dense != null) {
+                for (int row = dense.nextSetBit(0); row >= 0; row = dense.nextSetBit(row + 1)) {
+                    action.accept(row);
+                }
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                action.accept(sparse[i]);
+            }
+        }
+
+        void addTo(BitSet union) {
+            if (dense != null) {
+                union.or(dense);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                union.set(sparse[i]);
+            }
+        }
+
+        long memoryBytes() {
+            return dense != null ? dense.size() / Byte.SIZE : (long) sparse.length * Integer.BYTES;
+        }
+    }
+}
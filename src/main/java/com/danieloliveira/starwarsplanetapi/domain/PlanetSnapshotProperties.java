@@ -0,0 +1,16 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+    catálogo inteiro em memória (PlanetSnapshot)
+    rebuildInterval: de quanto em quanto tempo a tabela é relida, para trazer as escritas feitas por outras instâncias
+ */
+@ConfigurationProperties("planets.snapshot")
+public record PlanetSnapshotProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("5m") Duration rebuildInterval) {
+}
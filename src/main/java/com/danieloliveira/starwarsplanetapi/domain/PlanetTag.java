@@ -0,0 +1,130 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+    índice invertido das tags de clima e terreno: cada linha liga uma tag a um planeta
+    o índice (dimension, tag, planet_id) é a lista de planetas de cada tag, então o filtro lê só as tags pedidas
+    a chave estrangeira apaga as tags junto com o planeta direto no banco
+ */
+@Entity
+@Table(name = "planet_tags", indexes = @Index(name = "idx_planet_tags_lookup", columnList = "dimension, tag, planet_id"))
+@IdClass(PlanetTag.Key.class)
+public class PlanetTag implements Persistable<PlanetTag.Key> {
+
+    public enum Dimension {
+        CLIMATE, TERRAIN
+    }
+
+    @Id
+    @Column(name = "planet_id")
+    private Long planetId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Dimension dimension;
+
+    @Id
+    private String tag;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "planet_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Planet planet;
+
+    protected PlanetTag() {
+    }
+
+    public PlanetTag(Long planetId, Dimension dimension, String tag) {
+        this.planetId = planetId;
+        this.dimension = dimension;
+        this.tag = tag;
+    }
+
+    public static List<PlanetTag> of(Planet planet) {
+        List<PlanetTag> tags = new ArrayList<>();
+        parse(planet.getClimate()).forEach(tag -> tags.add(new PlanetTag(planet.getId(), Dimension.CLIMATE, tag)));
+        parse(planet.getTerrain()).forEach(tag -> tags.add(new PlanetTag(planet.getId(), Dimension.TERRAIN, tag)));
+        return tags;
+    }
+
+    // "Grasslands, mountains" vira [grasslands, mountains]
+    public static Set<String> parse(String value) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (value == null) {
+            return tags;
+        }
+        for (String tag : value.split(",")) {
+            String normalized = Planet.normalize(tag);
+            if (!normalized.isEmpty()) {
+                tags.add(normalized);
+            }
+        }
+        return tags;
+    }
+
+    public Long getPlanetId() {
+        return planetId;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(planetId, dimension, tag);
+    }
+
+    // as tags nunca são atualizadas, só inseridas ou apagadas, então o save não precisa fazer um SELECT antes
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    public static class Key implements Serializable {
+        private Long planetId;
+        private Dimension dimension;
+        private String tag;
+
+        public Key() {
+        }
+
+        public Key(Long planetId, Dimension dimension, String tag) {
+            this.planetId = planetId;
+            this.dimension = dimension;
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key other)) {
+                return false;
+            }
+            return Objects.equals(planetId, other.planetId) && dimension == other.dimension && Objects.equals(tag, other.tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(planetId, dimension, tag);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.springframework.data.repository.CrudRepository;
+
+public interface PlanetTagRepository extends CrudRepository<PlanetTag, PlanetTag.Key> {
+}
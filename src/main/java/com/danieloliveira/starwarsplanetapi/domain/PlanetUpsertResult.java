@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+// resultado de PUT /planets/name/{name}: o planeta como ficou no banco e o que o upsert fez com ele
+public record PlanetUpsertResult(Planet planet, Status status) {
+
+    public enum Status {
+        CREATED, UPDATED, UNCHANGED
+    }
+}
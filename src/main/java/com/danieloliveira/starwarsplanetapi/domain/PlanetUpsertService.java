@@ -0,0 +1,116 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/*
+    cria ou atualiza um planeta pelo nome com um único INSERT ... ON DUPLICATE KEY UPDATE
+    o nome repetido não vira uma exceção nem um rollback: o próprio MySQL troca o INSERT por um UPDATE na linha que já existe
+    a quantidade de linhas afetadas diz o que aconteceu: 1 para um planeta novo, 2 para uma linha alterada e 0 quando
+    os valores já eram os mesmos (por isso a URL do MySQL usa useAffectedRows=true; sem ela o driver devolveria 1)
+
+    version e updated_at só mudam quando clima ou terreno mudam, então repetir o mesmo PUT não muda o ETag
+    as atribuições do UPDATE rodam da esquerda para a direita, então version e updated_at comparam com os valores antigos
+ */
+@Service
+public class PlanetUpsertService {
+    private static final String UPSERT_PLANET = "INSERT INTO planets (name, climate, terrain, climate_normalized, terrain_normalized,"
+            + " version, updated_at) VALUES (?, ?, ?, ?, ?, 0, ?) ON DUPLICATE KEY UPDATE"
+            + " version = CASE WHEN climate = VALUES(climate) AND terrain = VALUES(terrain) THEN version ELSE version + 1 END,"
+            + " updated_at = CASE WHEN climate = VALUES(climate) AND terrain = VALUES(terrain) THEN updated_at ELSE VALUES(updated_at) END,"
+            + " climate = VALUES(climate), terrain = VALUES(terrain),"
+            + " climate_normalized = VALUES(climate_normalized), terrain_normalized = VALUES(terrain_normalized)";
+    private static final String SELECT_PLANET = "SELECT id, name, climate, terrain, version, updated_at FROM planets WHERE name = ?";
+    private static final String DELETE_TAGS = "DELETE FROM planet_tags WHERE planet_id = ?";
+    private static final String INSERT_TAG = "INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (?, ?, ?)";
+
+    private static final RowMapper<Planet> PLANET_ROW = (rs, rowNum) -> {
+        Planet planet = new Planet(rs.getLong("id"), rs.getString("name"), rs.getString("climate"), rs.getString("terrain"));
+        planet.setVersion(rs.getLong("version"));
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        planet.setUpdatedAt(updatedAt == null ? null : updatedAt.toInstant());
+        return planet;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final PlanetCache planetCache;
+    private final PlanetNameIndex planetNameIndex;
+    private final PlanetChangeLog planetChangeLog;
+    private final PlanetFacetCounts planetFacetCounts;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PlanetUpsertService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Validator validator,
+                               PlanetCache planetCache, PlanetNameIndex planetNameIndex, PlanetChangeLog planetChangeLog,
+                               PlanetFacetCounts planetFacetCounts, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.planetCache = planetCache;
+        this.planetNameIndex = planetNameIndex;
+        this.planetChangeLog = planetChangeLog;
+        this.planetFacetCounts = planetFacetCounts;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public PlanetUpsertResult upsert(Planet planet) {
+        Set<ConstraintViolation<Planet>> violations = validator.validate(planet);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+
+        PlanetUpsertResult result = transactionTemplate.execute(status -> write(planet));
+        // o nome pode estar no cache como consulta negativa, então o planeta gravado substitui essa entrada
+        planetCache.put(result.planet());
+        if (result.status() == PlanetUpsertResult.Status.CREATED) {
+            planetNameIndex.add(result.planet());
+        }
+        if (result.status() != PlanetUpsertResult.Status.UNCHANGED) {
+            eventPublisher.publishEvent(new PlanetsChangedEvent(List.of(result.planet().getId())));
+        }
+        return result;
+    }
+
+    // a leitura depois do upsert roda na mesma transação, no primário, e devolve o id, a versão e o nome como estão gravados
+    private PlanetUpsertResult write(Planet planet) {
+        int affected = jdbcTemplate.update(UPSERT_PLANET, planet.getName(), planet.getClimate(), planet.getTerrain(),
+                Planet.normalize(planet.getClimate()), Planet.normalize(planet.getTerrain()), Timestamp.from(Instant.now()));
+        Planet saved = jdbcTemplate.queryForObject(SELECT_PLANET, PLANET_ROW, planet.getName());
+
+        PlanetUpsertResult.Status status = switch (affected) {
+            case 0 -> PlanetUpsertResult.Status.UNCHANGED;
+            case 1 -> PlanetUpsertResult.Status.CREATED;
+            default -> PlanetUpsertResult.Status.UPDATED;
+        };
+        // as tags, o log de mudanças e as contagens por tag só recebem algo quando clima ou terreno mudaram
+        if (status == PlanetUpsertResult.Status.CREATED) {
+            planetChangeLog.created(List.of(saved));
+        } else if (status == PlanetUpsertResult.Status.UPDATED) {
+            planetFacetCounts.removed(List.of(saved.getId()));
+            jdbcTemplate.update(DELETE_TAGS, saved.getId());
+            planetChangeLog.updated(saved);
+        }
+        if (status != PlanetUpsertResult.Status.UNCHANGED) {
+            List<PlanetTag> tags = PlanetTag.of(saved);
+            jdbcTemplate.batchUpdate(INSERT_TAG, tags, tags.size(), (ps, tag) -> {
+                ps.setLong(1, tag.getPlanetId());
+                ps.setString(2, tag.getDimension().name());
+                ps.setString(3, tag.getTag());
+            });
+            planetFacetCounts.added(List.of(saved));
+        }
+        return new PlanetUpsertResult(saved, status);
+    }
+}
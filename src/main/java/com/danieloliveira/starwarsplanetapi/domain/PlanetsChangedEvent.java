@@ -0,0 +1,10 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import java.util.Collection;
+
+/*
+    publicado a cada create ou remove de planetas, depois do commit quando houver transação
+    serve para quem guarda algo derivado da tabela planets fora do domínio, como as respostas prontas da listagem
+ */
+public record PlanetsChangedEvent(Collection<Long> ids) {
+}
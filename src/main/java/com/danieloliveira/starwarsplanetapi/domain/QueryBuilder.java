@@ -1,8 +1,13 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
+import jakarta.persistence.Query;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 public class QueryBuilder {
 
     // o construtor dele deve ser privado, pois ela é uma classe estática
@@ -10,8 +15,62 @@ public class QueryBuilder {
     private QueryBuilder() {
     }
 
+    // compara apenas as colunas normalizadas, que já estão em minúsculo, para o filtro continuar sem diferenciar maiúsculas
     public static Example<Planet> makeQuery(Planet planet) {
-        ExampleMatcher exampleMatcher = ExampleMatcher.matchingAll().withIgnoreCase().withIgnoreNullValues();
+        ExampleMatcher exampleMatcher = ExampleMatcher.matchingAll()
+                .withIgnoreNullValues()
+                .withIgnorePaths("climate", "terrain");
         return Example.of(planet, exampleMatcher);
     }
+
+    /*
+        monta o where do JPQL para o alias "p" de Planet
+        nos modos ALL e ANY cada dimensão vira uma subconsulta em PlanetTag, que é resolvida pelo índice (dimension, tag, planet_id)
+        no ALL o having count garante que o planeta apareceu em todas as listas de tags pedidas (interseção)
+     */
+    public static String whereClause(PlanetFilter filter, boolean keyset) {
+        List<String> predicates = new ArrayList<>();
+        if (keyset) {
+            predicates.add("p.id > :after");
+        }
+        if (filter.hasTerrain()) {
+            predicates.add(predicate(filter.match(), "terrain", "normalizedTerrain"));
+        }
+        if (filter.hasClimate()) {
+            predicates.add(predicate(filter.match(), "climate", "normalizedClimate"));
+        }
+        return predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+    }
+
+    public static void bind(Query query, PlanetFilter filter) {
+        if (filter.hasTerrain()) {
+            bind(query, filter.match(), "terrain", filter.terrain(), filter.terrainTags(), PlanetTag.Dimension.TERRAIN);
+        }
+        if (filter.hasClimate()) {
+            bind(query, filter.match(), "climate", filter.climate(), filter.climateTags(), PlanetTag.Dimension.CLIMATE);
+        }
+    }
+
+    private static String predicate(PlanetFilter.Match match, String name, String normalizedField) {
+        return switch (match) {
+            case EXACT -> "p." + normalizedField + " = :" + name;
+            case ANY -> "p.id in (select t.planetId from PlanetTag t where t.dimension = :" + name + "Dimension"
+                    + " and t.tag in :" + name + "Tags)";
+            case ALL -> "p.id in (select t.planetId from PlanetTag t where t.dimension = :" + name + "Dimension"
+                    + " and t.tag in :" + name + "Tags group by t.planetId having count(t) = :" + name + "TagCount)";
+        };
+    }
+
+    private static void bind(Query query, PlanetFilter.Match match, String name, String value, Set<String> tags,
+                             PlanetTag.Dimension dimension) {
+        if (match == PlanetFilter.Match.EXACT) {
+            query.setParameter(name, value);
+            return;
+        }
+        query.setParameter(name + "Dimension", dimension);
+        query.setParameter(name + "Tags", tags);
+        if (match == PlanetFilter.Match.ALL) {
+            query.setParameter(name + "TagCount", (long) tags.size());
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package com.danieloliveira.starwarsplanetapi.web;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.websocket.OnClose;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -15,20 +18,96 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 
 @ControllerAdvice
 public class GeneralExceptionHandler extends ResponseEntityExceptionHandler {
+    private final MeterRegistry meterRegistry;
+
+    public GeneralExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, HttpHeaders headers, HttpStatusCode status, WebRequest request) {
+        count(HttpStatus.UNPROCESSABLE_ENTITY, ex);
         return super.handleMethodArgumentNotValid(ex, headers, HttpStatus.UNPROCESSABLE_ENTITY, request);
     }
 
     @ExceptionHandler(DataIntegrityViolationException.class)
     private ResponseEntity<Object> handleConflict(DataIntegrityViolationException ex){
+        count(HttpStatus.CONFLICT, ex);
         return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
     }
 
+    // validação feita no serviço, como a do PUT /planets/name/{name}, com o mesmo status do @Valid
+    @ExceptionHandler(ConstraintViolationException.class)
+    private ResponseEntity<Object> handleConstraintViolation(ConstraintViolationException exception) {
+        count(HttpStatus.UNPROCESSABLE_ENTITY, exception);
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    private ResponseEntity<Object> handleIdempotencyKeyReused(IdempotencyKeyReusedException exception) {
+        count(HttpStatus.UNPROCESSABLE_ENTITY, exception);
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    private ResponseEntity<Object> handleIdempotencyKeyInProgress(IdempotencyKeyInProgressException exception) {
+        count(HttpStatus.CONFLICT, exception);
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(ResumePointExpiredException.class)
+    private ResponseEntity<Object> handleResumePointExpired(ResumePointExpiredException exception) {
+        count(HttpStatus.GONE, exception);
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    private ResponseEntity<Object> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException exception) {
+        count(HttpStatus.BAD_REQUEST, exception);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+
     @ExceptionHandler(EmptyResultDataAccessException.class)
     private ResponseEntity<Object> handleBadRequest(EmptyResultDataAccessException exception) {
+        count(HttpStatus.NOT_FOUND, exception);
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(exception.getMessage());
     }
+
+    @ExceptionHandler(InvalidFilterException.class)
+    private ResponseEntity<Object> handleInvalidFilter(InvalidFilterException exception) {
+        count(HttpStatus.BAD_REQUEST, exception);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    private ResponseEntity<Object> handleInvalidRequest(InvalidRequestException exception) {
+        count(HttpStatus.BAD_REQUEST, exception);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    private ResponseEntity<Object> handleInvalidPage(InvalidPageRequestException exception) {
+        count(HttpStatus.BAD_REQUEST, exception);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+
+    // separa os erros tratados aqui por status e exceção, para alertar sobre um aumento de conflitos ou de 404
+    private void count(HttpStatus status, Exception exception) {
+        Counter.builder("planets.errors")
+                .description("Erros tratados pelo GeneralExceptionHandler")
+                .tag("status", String.valueOf(status.value()))
+                .tag("exception", exception.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
 }
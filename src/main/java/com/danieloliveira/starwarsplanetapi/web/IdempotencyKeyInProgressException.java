@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+// o POST original com a mesma Idempotency-Key ainda não terminou; o cliente recebe 409 e repete o retry mais tarde
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String key) {
+        super("A request with Idempotency-Key " + key + " is still in progress");
+    }
+}
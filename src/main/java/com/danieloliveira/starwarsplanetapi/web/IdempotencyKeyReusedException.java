@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+// a mesma Idempotency-Key chegou com outro corpo; repetir a resposta guardada devolveria um planeta que o cliente não pediu
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency-Key " + key + " was already used with a different request");
+    }
+}
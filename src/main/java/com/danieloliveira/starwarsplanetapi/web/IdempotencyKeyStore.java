@@ -0,0 +1,102 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+    respostas de POST guardadas pela Idempotency-Key do cliente (planets.idempotency)
+    um POST repetido com a mesma chave recebe a resposta original, com o cabeçalho Idempotent-Replayed, sem ir ao banco
+    a chave vale só para o cliente e o endereço que a enviaram: dois clientes que escolherem a mesma chave não recebem
+    a resposta um do outro, e a mesma chave em outro endpoint é outra execução
+    um retry que chega enquanto o original ainda roda espera por ele em vez de tentar gravar o mesmo planeta de novo,
+    até waitTimeout; depois disso recebe 409 e pode tentar mais tarde, sem prender a thread pelo tempo do original
+    só respostas de sucesso ficam guardadas: se o original falhar, a chave é liberada e o próximo retry roda de novo
+
+    o limite de chaves e o ttl deixam a memória limitada; cada instância tem o próprio cache, então um retry que cai em
+    outra instância roda de novo e recebe o 409 do nome repetido, como acontecia sem a chave
+ */
+@Component
+public class IdempotencyKeyStore implements MeterBinder {
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final Cache<Key, Execution> executions;
+    private final Duration waitTimeout;
+
+    public IdempotencyKeyStore(IdempotencyProperties properties) {
+        this.waitTimeout = properties.waitTimeout();
+        this.executions = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+    }
+
+    // client e path delimitam a chave; request identifica o corpo, para a mesma chave não ser usada com outro planeta
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String client, String path, String key, Object request, Supplier<ResponseEntity<T>> action) {
+        Key scoped = new Key(client, path, key);
+        Execution execution = new Execution(request, new CompletableFuture<>());
+        Execution original = executions.asMap().putIfAbsent(scoped, execution);
+        if (original != null) {
+            if (!original.request().equals(request)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            return (ResponseEntity<T>) replay(key, original);
+        }
+
+        try {
+            ResponseEntity<T> response = action.get();
+            execution.response().complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            executions.asMap().remove(scoped, execution);
+            execution.response().completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, executions, "planets.idempotency");
+    }
+
+    // quem esperava por um original que falhou recebe o mesmo erro
+    private ResponseEntity<?> replay(String key, Execution original) {
+        ResponseEntity<?> response;
+        try {
+            response = original.response().get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IdempotencyKeyInProgressException(key);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private record Key(String client, String path, String key) {
+    }
+
+    private record Execution(Object request, CompletableFuture<ResponseEntity<?>> response) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// waitTimeout: quanto um retry espera pelo POST original com a mesma chave antes de receber 409
+@ConfigurationProperties("planets.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("10s") Duration waitTimeout) {
+}
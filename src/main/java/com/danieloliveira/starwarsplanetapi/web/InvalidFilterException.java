@@ -0,0 +1,8 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+public class InvalidFilterException extends RuntimeException {
+
+    public InvalidFilterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+// o cabeçalho Idempotency-Key veio vazio ou longo demais
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
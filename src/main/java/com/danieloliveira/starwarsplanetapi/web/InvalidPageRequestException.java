@@ -0,0 +1,8 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+public class InvalidPageRequestException extends RuntimeException {
+
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+// um parâmetro ou o corpo da requisição é inválido por um motivo que não é um filtro da listagem nem uma página
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,247 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetChange;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetsChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    conexões abertas em GET /planets/changes
+    uma única leitura por instância acompanha a tabela planet_changes e guarda as últimas bufferSize mudanças em memória;
+    cada cliente tem o próprio cursor, a última sequence enviada, e recebe as mudanças do buffer a partir dele, então N
+    clientes não viram N consultas por segundo e um cliente lento não atrasa os outros
+    quem volta de uma desconexão mais antiga que o buffer lê a tabela a partir do próprio cursor até alcançar o buffer
+    a leitura roda logo depois do commit de uma escrita desta instância e, a cada pollInterval, para ver as escritas
+    das outras instâncias
+
+    a sequence é gerada no INSERT, antes do commit, então uma transação mais lenta pode commitar uma sequence menor
+    depois de uma maior já ter sido lida. A leitura só avança por números seguidos: um buraco espera até gapTimeout,
+    medido no relógio desta instância desde que o buraco foi visto, e depois é pulado, porque um rollback também deixa buracos
+    a retenção apaga as mudanças mais velhas que retention; um cursor anterior a elas recebe 410 e precisa recarregar o catálogo
+ */
+@Component
+public class PlanetChangeFeed implements MeterBinder, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PlanetChangeFeed.class);
+    private final PlanetService planetService;
+    private final PlanetChangeFeedProperties properties;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("planet-changes").daemon().factory());
+    // os envios rodam em virtual threads: um cliente lento prende só a própria thread
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    // escritos só pela thread do scheduler; os clientes leem o buffer até head
+    private final ConcurrentSkipListMap<Long, PlanetChange> recent = new ConcurrentSkipListMap<>();
+    private volatile long head = -1;
+    // sequences até floor não estão mais no buffer
+    private volatile long floor = -1;
+    private long gapSince = -1;
+
+    public PlanetChangeFeed(PlanetService planetService, PlanetChangeFeedProperties properties) {
+        this.planetService = planetService;
+        this.properties = properties;
+        long poll = properties.pollInterval().toMillis();
+        long heartbeat = properties.heartbeat().toMillis();
+        long prune = properties.pruneInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::poll, 0, poll, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> subscribers.forEach(subscriber -> senders.execute(subscriber::heartbeat)),
+                heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::prune, prune, prune, TimeUnit.MILLISECONDS);
+    }
+
+    // sem after, o cliente recebe só o que mudar depois de se conectar
+    public SseEmitter subscribe(Long after) {
+        if (after != null && after < planetService.earliestChange() - 1) {
+            throw new ResumePointExpiredException(after);
+        }
+        long cursor = after != null ? after : planetService.latestChange();
+        SseEmitter emitter = new SseEmitter(properties.timeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, cursor);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscriber.wake();
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        scheduler.execute(this::poll);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("planets.changes.subscribers", subscribers, Set::size)
+                .description("Conexões abertas em GET /planets/changes")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    // a leitura compartilhada: roda só na thread do scheduler, então head, floor e gapSince não precisam de lock
+    void poll() {
+        try {
+            if (head < 0) {
+                head = planetService.latestChange();
+                floor = head;
+            }
+            List<PlanetChange> changes;
+            do {
+                changes = planetService.changes(head, properties.batchSize());
+            } while (publish(changes) && changes.size() == properties.batchSize());
+        } catch (RuntimeException ex) {
+            // uma falha do banco não derruba as conexões; a próxima volta do poll tenta de novo
+            log.warn("Falha ao ler as mudanças de planet_changes", ex);
+        }
+        subscribers.forEach(Subscriber::wake);
+    }
+
+    private boolean publish(List<PlanetChange> changes) {
+        for (PlanetChange change : changes) {
+            if (change.getSequence() != head + 1) {
+                long now = System.nanoTime();
+                if (gapSince < 0) {
+                    gapSince = now;
+                }
+                if (now - gapSince < properties.gapTimeout().toNanos()) {
+                    return false;
+                }
+            }
+            gapSince = -1;
+            recent.put(change.getSequence(), change);
+            head = change.getSequence();
+        }
+        while (recent.size() > properties.bufferSize()) {
+            floor = recent.pollFirstEntry().getKey();
+        }
+        return true;
+    }
+
+    private void prune() {
+        try {
+            planetService.pruneChanges(Instant.now().minus(properties.retention()));
+        } catch (RuntimeException ex) {
+            // a próxima volta tenta de novo
+            log.warn("Falha ao apagar as mudanças antigas de planet_changes", ex);
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private long cursor;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        // vários avisos enquanto o cliente ainda não foi atendido viram um único envio
+        void wake() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            scheduled.set(false);
+            lock.lock();
+            try {
+                long published = head;
+                while (cursor < published) {
+                    if (cursor >= floor) {
+                        fromBuffer(published);
+                    } else {
+                        fromTable(published);
+                    }
+                }
+            } catch (IOException | IllegalStateException ex) {
+                close();
+            } catch (RuntimeException ex) {
+                // a próxima volta do poll acorda o cliente de novo
+                log.warn("Falha ao enviar as mudanças a um cliente de /planets/changes", ex);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // se o buffer foi cortado acima do cursor durante a cópia, nada é enviado e a próxima volta lê da tabela
+        private void fromBuffer(long published) throws IOException {
+            long start = cursor;
+            List<PlanetChange> changes = new ArrayList<>(recent.subMap(start, false, published, true).values());
+            if (floor > start) {
+                return;
+            }
+            send(changes);
+            cursor = published;
+        }
+
+        // só o que a leitura compartilhada já publicou; o que passar de published chega pelo buffer
+        private void fromTable(long published) throws IOException {
+            List<PlanetChange> changes = planetService.changes(cursor, properties.batchSize());
+            List<PlanetChange> visible = changes.stream().filter(change -> change.getSequence() <= published).toList();
+            send(visible);
+            if (visible.size() < changes.size() || changes.isEmpty()) {
+                // nada mais até published na tabela: o que faltava foi um rollback ou saiu pela retenção
+                cursor = Math.max(cursor, published);
+            }
+        }
+
+        private void send(List<PlanetChange> changes) throws IOException {
+            for (PlanetChange change : changes) {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getSequence()))
+                        .name(change.getType().name().toLowerCase(Locale.ROOT))
+                        .data(change, MediaType.APPLICATION_JSON));
+                cursor = change.getSequence();
+            }
+        }
+
+        void heartbeat() {
+            lock.lock();
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException ex) {
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close() {
+            subscribers.remove(this);
+            emitter.complete();
+        }
+    }
+}
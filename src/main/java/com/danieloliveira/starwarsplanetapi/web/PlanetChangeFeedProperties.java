@@ -0,0 +1,27 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/*
+    pollInterval: de quanto em quanto tempo o feed procura mudanças gravadas por outras instâncias
+    heartbeat: comentário mandado nas conexões paradas, para proxies não fecharem e para descobrir clientes que saíram
+    timeout: duração máxima de uma conexão; o EventSource reconecta sozinho com o Last-Event-ID
+    gapTimeout: quanto tempo um buraco na sequência espera pelo commit da transação que o abriu
+    bufferSize: quantas mudanças recentes ficam em memória para os clientes conectados
+    retention: idade a partir da qual as mudanças são apagadas de planet_changes; quem volta depois disso recebe 410
+    pruneInterval: de quanto em quanto tempo a retenção roda
+ */
+@ConfigurationProperties("planets.changes")
+public record PlanetChangeFeedProperties(
+        @DefaultValue("1s") Duration pollInterval,
+        @DefaultValue("15s") Duration heartbeat,
+        @DefaultValue("30m") Duration timeout,
+        @DefaultValue("5s") Duration gapTimeout,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("10000") int bufferSize,
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("1h") Duration pruneInterval) {
+}
@@ -1,44 +1,308 @@
 package com.danieloliveira.starwarsplanetapi.web;
 
 import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetBatchResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetBatchService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetDeleteResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetExporter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFacets;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetField;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetIdentity;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetListVersion;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetNameMatch;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetPage;
 import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetTag;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetUpsertResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetUpsertService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/planets")
 public class PlanetController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_DELETE_IDS = 1000;
+    static final int DEFAULT_SEARCH_LIMIT = 10;
+    static final int MAX_SEARCH_LIMIT = 50;
+    static final int MAX_SEARCH_LENGTH = 100;
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private PlanetService planetService;
 
+    @Autowired
+    private PlanetBatchService planetBatchService;
+
+    @Autowired
+    private PlanetUpsertService planetUpsertService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlanetListResponseCache planetListResponseCache;
+
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Autowired
+    private PlanetChangeFeed planetChangeFeed;
+
+    @Autowired
+    private PlanetExporter planetExporter;
+
+    /*
+        com Idempotency-Key, um retry do mesmo POST recebe o planeta criado na primeira vez em vez de um 409
+        a chave é guardada junto com o cliente (o usuário autenticado ou, sem login, o endereço de origem) e o endereço do POST
+     */
     @PostMapping
-    public ResponseEntity<Planet> create(@RequestBody @Valid Planet planet) {
-        Planet planetCreated = planetService.create(planet);
-        return ResponseEntity.status(HttpStatus.CREATED).body(planetCreated);
+    public ResponseEntity<Planet> create(@RequestBody @Valid Planet planet,
+                                         @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                         HttpServletRequest request) {
+        if (idempotencyKey == null) {
+            return created(planet);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(IDEMPOTENCY_KEY_HEADER + " header must have between 1 and "
+                    + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        // o planeta recebe o id quando é salvo, então a identificação do corpo é montada antes
+        List<String> body = List.of(planet.getName(), planet.getClimate(), planet.getTerrain());
+        String client = request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : request.getRemoteAddr();
+        return idempotencyKeyStore.execute(client, request.getRequestURI(), idempotencyKey, body, () -> created(planet));
+    }
+
+    /*
+        cria o planeta ou troca o clima e o terreno do planeta com esse nome, sem passar pelo 409 do nome repetido
+        responde 201 quando o planeta é novo e 200 quando já existia; repetir o mesmo corpo não muda a versão nem o ETag
+     */
+    @PutMapping("name/{name}")
+    public ResponseEntity<Planet> upsert(@PathVariable String name, @RequestBody Planet planet) {
+        if (planet.getName() != null && !planet.getName().equals(name)) {
+            throw new InvalidRequestException("name in the body must match the name in the path");
+        }
+        planet.setName(name);
+        PlanetUpsertResult result = planetUpsertService.upsert(planet);
+        Planet saved = result.planet();
+        ResponseEntity.BodyBuilder response = result.status() == PlanetUpsertResult.Status.CREATED
+                ? ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentContextPath().path("/planets/{id}").buildAndExpand(saved.getId()).toUri())
+                : ResponseEntity.ok();
+        response.varyBy(HttpHeaders.ACCEPT).eTag(PlanetETags.of(saved));
+        if (saved.getUpdatedAt() != null) {
+            response.lastModified(saved.getUpdatedAt());
+        }
+        return response.body(saved);
+    }
+
+    // aceita um array JSON ou NDJSON; os planetas são lidos do corpo da requisição conforme a carga avança, sem montar uma lista
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<PlanetBatchResult> createBatch(HttpServletRequest request) throws IOException {
+        try (MappingIterator<Planet> planets = objectMapper.readerFor(Planet.class).readValues(request.getInputStream())) {
+            return ResponseEntity.ok(planetBatchService.createAll(planets));
+        }
     }
 
     @GetMapping(value = "/{id}")
     public ResponseEntity<Planet> getPlanetById(@PathVariable Long id) {
-        return planetService.get(id).map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        return withValidators(planetService.get(id)
+                .orElseThrow(() -> new EmptyResultDataAccessException("No planet found with id " + id, 1)));
     }
 
     @GetMapping("name/{name}")
     public ResponseEntity<Planet> getByName(@PathVariable String name) {
-        return planetService.getByName(name).map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+        return withValidators(planetService.getByName(name)
+                .orElseThrow(() -> new EmptyResultDataAccessException("No planet found with name " + name, 1)));
     }
 
+    /*
+        autocompletar: q é o começo do nome, sem diferença entre maiúsculas, minúsculas e acentos
+        a partir de 3 letras a busca aceita 1 erro de digitação e a partir de 6 letras aceita 2
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<PlanetNameMatch>> search(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        if (q.isBlank() || q.length() > MAX_SEARCH_LENGTH) {
+            throw new InvalidRequestException("q must have between 1 and " + MAX_SEARCH_LENGTH + " characters");
+        }
+        int size = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+        if (size < 1 || size > MAX_SEARCH_LIMIT) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        return ResponseEntity.ok(planetService.search(q, size));
+    }
+
+    /*
+        quantos planetas existem com cada tag de clima e de terreno; Yavin IV ("temperate, tropical") conta nos dois climas
+        terrain=desert conta os climas só dos planetas com deserto, e climate=arid conta os terrenos só dos planetas áridos
+        as contagens são mantidas a cada escrita, então a resposta não depende da quantidade de planetas
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<PlanetFacets> facets(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate) {
+        return ResponseEntity.ok(planetService.facets(facetTag("terrain", terrain), facetTag("climate", climate)));
+    }
+
+    /*
+        stream de Server-Sent Events com as criações, atualizações e remoções de planetas, na ordem em que foram gravadas
+        o id de cada evento é a sequence da mudança: o EventSource manda o último id em Last-Event-ID ao se reconectar e
+        recebe o que perdeu; after faz o mesmo para quem não usa EventSource. Sem nenhum dos dois, só as mudanças novas
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                              @RequestParam(required = false) String after) {
+        String cursor = lastEventId != null ? lastEventId : after;
+        if (cursor == null) {
+            return planetChangeFeed.subscribe(null);
+        }
+        try {
+            long sequence = Long.parseLong(cursor.trim());
+            if (sequence < 0) {
+                throw new NumberFormatException();
+            }
+            return planetChangeFeed.subscribe(sequence);
+        } catch (NumberFormatException ex) {
+            throw new InvalidFilterException("Last-Event-ID and after must be a change sequence number");
+        }
+    }
+
+    /*
+        terrain e climate aceitam várias tags separadas por vírgula, como terrain=grasslands,mountains
+        match=all (padrão) exige todas as tags, match=any aceita qualquer uma e match=exact compara o valor inteiro
+        quando o cliente manda If-None-Match, a versão da listagem é conferida antes de carregar os planetas
+        fields=id,name devolve só esses campos, lidos do banco sem carregar as entidades
+        a listagem completa em JSON sai do PlanetListResponseCache, já serializada e, se o cliente aceitar, já em gzip
+     */
     @GetMapping
-    public ResponseEntity<List<Planet>> getAll(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate) {
-        List<Planet> planets = planetService.list(terrain, climate);
-        return ResponseEntity.ok(planets);
+    public ResponseEntity<?> getAll(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate,
+                                    @RequestParam(required = false) String match,
+                                    @RequestParam(required = false) Integer limit, @RequestParam(required = false) String after,
+                                    @RequestParam(required = false) String fields,
+                                    WebRequest request) {
+        PlanetFilter filter = filter(terrain, climate, match);
+        Set<PlanetField> selected = fields(fields);
+        boolean conditional = request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        if (limit == null && after == null) {
+            boolean cacheable = selected == null && acceptsJson(request.getHeader(HttpHeaders.ACCEPT));
+            PlanetListResponseCache.Entry cached = cacheable ? planetListResponseCache.get(filter) : null;
+            if (cached != null) {
+                return cached(cached, request);
+            }
+            if (conditional && request.checkNotModified(PlanetETags.of(planetService.version(filter)))) {
+                return null;
+            }
+            if (cacheable) {
+                return cached(planetListResponseCache.load(filter, () -> serialize(planetService.list(filter))), request);
+            }
+            List<? extends PlanetIdentity> planets = selected == null ? planetService.list(filter) : planetService.list(filter, selected);
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(PlanetETags.of(PlanetListVersion.of(planets))).body(planets);
+        }
+
+        int pageSize = PlanetCursor.limit(limit);
+        long afterId = PlanetCursor.decode(after);
+        if (conditional && request.checkNotModified(PlanetETags.of(planetService.version(filter, afterId, pageSize)))) {
+            return null;
+        }
+        PlanetPage<? extends PlanetIdentity> page = selected == null
+                ? planetService.page(filter, afterId, pageSize)
+                : planetService.page(filter, selected, afterId, pageSize);
+        String etag = PlanetETags.of(PlanetListVersion.of(page));
+        if (!page.hasNext()) {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(etag).body(page.planets());
+        }
+
+        String cursor = PlanetCursor.encode(page.nextAfter());
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("limit", pageSize)
+                .replaceQueryParam("after", cursor)
+                .toUriString();
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(etag)
+                .header(NEXT_CURSOR_HEADER, cursor)
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page.planets());
+    }
+
+    // cada planeta é escrito na resposta assim que sai do cursor do JDBC, então a memória não depende do tamanho do resultado
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate,
+                                                        @RequestParam(required = false) String match) {
+        PlanetFilter filter = filter(terrain, climate, match);
+        StreamingResponseBody body = outputStream -> {
+            SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream);
+            planetService.stream(filter, planet -> {
+                try {
+                    writer.write(planet);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /*
+        exportação do catálogo inteiro (ou só do filtro) para jobs, em NDJSON (padrão) ou CSV com format=csv
+        as linhas vão do ResultSet do PlanetExporter direto para a resposta, então a memória não depende do tamanho da tabela
+        com Accept-Encoding: gzip a compressão é feita aqui, no nível mais rápido, para não segurar o cursor do banco;
+        com Content-Encoding já definido, o Tomcat não comprime de novo
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate,
+                                                        @RequestParam(required = false) String match, @RequestParam(required = false) String format,
+                                                        @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        PlanetFilter filter = filter(terrain, climate, match);
+        PlanetExportFormat exportFormat = PlanetExportFormat.of(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, PlanetExportFormat.BUFFER_SIZE) {{
+                def.setLevel(Deflater.BEST_SPEED);
+            }} : outputStream;
+            PlanetExportFormat.Sink sink = exportFormat.open(target, objectMapper);
+            planetExporter.export(filter, sink);
+            sink.flush();
+            if (target instanceof GZIPOutputStream compressed) {
+                compressed.finish();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(exportFormat.contentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(exportFormat.fileName()).build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     @DeleteMapping("/{id}")
@@ -47,4 +311,121 @@ public class PlanetController {
         return ResponseEntity.noContent().build();
     }
 
+    // DELETE /planets?ids=1,2,3 apaga todos em um único comando; o limite mantém a lista do IN em um tamanho razoável
+    @DeleteMapping
+    public ResponseEntity<PlanetDeleteResult> removeAll(@RequestParam Set<Long> ids) {
+        if (ids.size() > MAX_DELETE_IDS) {
+            throw new InvalidFilterException("ids must have at most " + MAX_DELETE_IDS + " values");
+        }
+        return ResponseEntity.ok(planetService.removeAll(ids));
+    }
+
+    private ResponseEntity<Planet> created(Planet planet) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(planetService.create(planet));
+    }
+
+    /*
+        o Spring compara o ETag e o Last-Modified com o If-None-Match e o If-Modified-Since da requisição
+        e responde 304 sem escrever o corpo quando nada mudou
+        o mesmo endereço responde JSON, CBOR ou Smile conforme o Accept, então o Vary avisa os caches para separar as respostas
+        a listagem não manda Last-Modified porque apagar um planeta não muda o maior updated_at
+        o 404 sai como exceção, para passar pelo GeneralExceptionHandler e entrar em planets.errors como os outros erros
+     */
+    private static ResponseEntity<Planet> withValidators(Planet planet) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(PlanetETags.of(planet));
+        if (planet.getUpdatedAt() != null) {
+            response.lastModified(planet.getUpdatedAt());
+        }
+        return response.body(planet);
+    }
+
+    // os bytes guardados vão para a resposta sem cópia; com Content-Encoding já definido, o Tomcat não comprime de novo
+    private static ResponseEntity<byte[]> cached(PlanetListResponseCache.Entry entry, WebRequest request) {
+        if (request.checkNotModified(entry.eTag())) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(entry.eTag())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.body(entry.json());
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip());
+    }
+
+    private PlanetListResponseCache.Entry serialize(List<Planet> planets) {
+        try {
+            return PlanetListResponseCache.Entry.of(objectMapper.writeValueAsBytes(planets), PlanetETags.of(PlanetListVersion.of(planets)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // só respostas em JSON ficam no cache; quem pede CBOR ou Smile passa pelos conversores do Spring
+    private static boolean acceptsJson(String accept) {
+        if (accept == null) {
+            return true;
+        }
+        try {
+            List<MediaType> types = MediaType.parseMediaTypes(accept);
+            return types.stream().anyMatch(type -> type.includes(MediaType.APPLICATION_JSON) && type.getQualityValue() > 0)
+                    && types.stream().noneMatch(type -> type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)
+                    || type.equalsTypeAndSubtype(SMILE));
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].strip();
+            boolean refused = parts.length > 1 && parts[1].strip().matches("q=0(\\.0*)?");
+            if ((name.equalsIgnoreCase("gzip") || name.equals("*")) && !refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // sem fields a resposta traz o planeta inteiro; um campo desconhecido é um erro do cliente
+    private static Set<PlanetField> fields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<PlanetField> selected = EnumSet.noneOf(PlanetField.class);
+        for (String field : fields.split(",")) {
+            try {
+                selected.add(PlanetField.valueOf(field.strip().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidFilterException("fields must be among id, name, climate, terrain");
+            }
+        }
+        return selected;
+    }
+
+    // as contagens guardam pares de tags, então o filtro das facetas aceita uma tag por dimensão
+    private static String facetTag(String name, String value) {
+        Set<String> tags = PlanetTag.parse(value);
+        if (tags.size() > 1) {
+            throw new InvalidFilterException(name + " must be a single tag");
+        }
+        return tags.isEmpty() ? null : tags.iterator().next();
+    }
+
+    private static PlanetFilter filter(String terrain, String climate, String match) {
+        if (match == null) {
+            return PlanetFilter.of(terrain, climate);
+        }
+        try {
+            return PlanetFilter.of(terrain, climate, PlanetFilter.Match.valueOf(match.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFilterException("match must be one of all, any, exact");
+        }
+    }
+
 }
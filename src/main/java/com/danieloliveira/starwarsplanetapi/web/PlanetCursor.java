@@ -0,0 +1,45 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// o cursor é opaco para o cliente: ele só precisa devolver o valor recebido no cabeçalho da página anterior
+// público para a variante reativa da API paginar com o mesmo formato
+public final class PlanetCursor {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String PREFIX = "id:";
+
+    private PlanetCursor() {
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long decode(String cursor) {
+        if (cursor == null) {
+            return 0L;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public static int limit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidPageRequestException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
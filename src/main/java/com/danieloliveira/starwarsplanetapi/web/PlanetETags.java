@@ -0,0 +1,26 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetListVersion;
+
+import java.util.Objects;
+
+/*
+    o valor muda sempre que o planeta muda, já que a versão é incrementada a cada UPDATE
+    os ETags são fracos (W/): o mesmo planeta sai em JSON, CBOR, Smile ou em gzip com o mesmo valor, e um ETag forte diria
+    que os bytes são idênticos; o Vary: Accept das respostas mantém as representações separadas nos caches
+    o If-None-Match usa a comparação fraca, então o 304 continua funcionando igual
+ */
+final class PlanetETags {
+
+    private PlanetETags() {
+    }
+
+    static String of(Planet planet) {
+        return "W/\"" + planet.getId() + "-" + Objects.requireNonNullElse(planet.getVersion(), 0L) + "\"";
+    }
+
+    static String of(PlanetListVersion version) {
+        return "W/\"" + version.count() + "-" + version.maxId() + "-" + version.idSum() + "-" + version.versionSum() + "\"";
+    }
+}
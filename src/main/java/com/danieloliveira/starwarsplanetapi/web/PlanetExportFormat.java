@@ -0,0 +1,129 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetExporter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/*
+    formatos de GET /planets/export
+    as linhas são escritas campo a campo, direto do ResultSet, sem passar por um Planet nem pelos conversores do Spring
+    NDJSON: um objeto por linha, com os mesmos campos do JSON de Planet
+    CSV: cabeçalho id,name,climate,terrain e linhas terminadas em CRLF; valores com vírgula, aspas ou quebra de linha
+    vão entre aspas, com as aspas internas duplicadas (RFC 4180)
+    valores que começam com =, +, -, @, tab ou CR ganham um ' na frente, para o Excel e o Sheets não os executarem
+    como fórmula quando a planilha for aberta
+ */
+enum PlanetExportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson") {
+        @Override
+        Sink open(OutputStream outputStream, ObjectMapper objectMapper) throws IOException {
+            // o fim da exportação não fecha a resposta, quem fecha é o Spring; a quebra de linha substitui o espaço entre objetos
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+            return new Sink() {
+                @Override
+                public void write(long id, String name, String climate, String terrain) throws IOException {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", id);
+                    generator.writeStringField("name", name);
+                    generator.writeStringField("climate", climate);
+                    generator.writeStringField("terrain", terrain);
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    generator.flush();
+                }
+            };
+        }
+    },
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv") {
+        @Override
+        Sink open(OutputStream outputStream, ObjectMapper objectMapper) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write("id,name,climate,terrain\r\n");
+            return new Sink() {
+                @Override
+                public void write(long id, String name, String climate, String terrain) throws IOException {
+                    writer.write(Long.toString(id));
+                    writer.write(',');
+                    writeField(writer, name);
+                    writer.write(',');
+                    writeField(writer, climate);
+                    writer.write(',');
+                    writeField(writer, terrain);
+                    writer.write("\r\n");
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    writer.flush();
+                }
+            };
+        }
+    };
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    interface Sink extends PlanetExporter.RowWriter, Flushable {
+    }
+
+    private final MediaType contentType;
+    private final String extension;
+
+    PlanetExportFormat(MediaType contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    abstract Sink open(OutputStream outputStream, ObjectMapper objectMapper) throws IOException;
+
+    MediaType contentType() {
+        return contentType;
+    }
+
+    String fileName() {
+        return "planets." + extension;
+    }
+
+    // sem format a exportação sai em NDJSON
+    static PlanetExportFormat of(String format) {
+        if (format == null) {
+            return NDJSON;
+        }
+        try {
+            return valueOf(format.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException("format must be one of ndjson, csv");
+        }
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,13 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties("planets.list-cache")
+public record PlanetListCacheProperties(
+        @DefaultValue("64MB") DataSize maximumSize,
+        @DefaultValue("1m") Duration ttl) {
+}
@@ -0,0 +1,102 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetsChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/*
+    respostas prontas de GET /planets sem paginação: o JSON já serializado e a versão em gzip, junto com o ETag
+    um acerto não consulta o banco nem serializa nada, os bytes guardados vão direto para a resposta
+    o tamanho é limitado em bytes (planets.list-cache.maximum-size) e o Caffeine escolhe quem sai pela frequência de uso
+    qualquer create ou remove limpa o cache inteiro; o ttl limita o tempo que uma resposta lida de uma réplica atrasada fica guardada
+ */
+@Component
+public class PlanetListResponseCache implements MeterBinder {
+    private final Cache<Key, Entry> responses;
+    // muda a cada limpeza, para uma listagem que começou antes de uma escrita não ser guardada depois dela
+    private final AtomicLong generation = new AtomicLong();
+
+    public PlanetListResponseCache(PlanetListCacheProperties properties) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumSize().toBytes())
+                .weigher((Key key, Entry entry) -> entry.json().length + entry.gzip().length)
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+    }
+
+    public Entry get(PlanetFilter filter) {
+        return responses.getIfPresent(Key.of(filter));
+    }
+
+    // como no PlanetCache, a consulta roda fora do Caffeine para não segurar o lock do compute durante a chamada ao banco
+    public Entry load(PlanetFilter filter, Supplier<Entry> loader) {
+        long start = generation.get();
+        Entry entry = loader.get();
+        if (generation.get() == start) {
+            Key key = Key.of(filter);
+            responses.put(key, entry);
+            if (generation.get() != start) {
+                responses.invalidate(key);
+            }
+        }
+        return entry;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        responses.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, responses, "planets.list");
+    }
+
+    // o gzip é feito uma vez por resposta guardada, então vale usar a compressão máxima
+    public record Entry(byte[] json, byte[] gzip, String eTag) {
+
+        public static Entry of(byte[] json, String eTag) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }}) {
+                gzip.write(json);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return new Entry(json, compressed.toByteArray(), eTag);
+        }
+    }
+
+    // em match=all e match=any a ordem das tags não importa, então "mountains, grasslands" e "grasslands,mountains" dividem a entrada
+    private record Key(PlanetFilter.Match match, Set<String> terrainTags, Set<String> climateTags, String terrain, String climate) {
+
+        static Key of(PlanetFilter filter) {
+            if (filter.match() == PlanetFilter.Match.EXACT) {
+                return new Key(filter.match(), null, null, filter.terrain(), filter.climate());
+            }
+            return new Key(filter.match(), filter.terrainTags(), filter.climateTags(), null, null);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.danieloliveira.starwarsplanetapi.web;
+
+// o Last-Event-ID (ou ?after=) é mais antigo que as mudanças guardadas; o cliente recebe 410 e recarrega o catálogo
+public class ResumePointExpiredException extends RuntimeException {
+
+    public ResumePointExpiredException(long after) {
+        super("Changes after " + after + " are no longer retained; reload GET /planets and reconnect without Last-Event-ID");
+    }
+}
@@ -0,0 +1,110 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.StarwarsPlanetApiApplication;
+import com.danieloliveira.starwarsplanetapi.reactive.ReactivePlanetApiApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    compara p99 e vazão da API padrão (Tomcat + JPA) e da variante reativa (Netty + R2DBC) com muitos clientes simultâneos
+    as duas leem o mesmo banco: a API padrão cria as tabelas e recebe a carga inicial, e a reativa sobe enquanto ela ainda está de pé
+    a proteção contra sobrecarga e o cache ficam desligados na API padrão, para as duas irem ao banco em toda requisição
+    o banco padrão é um H2 em memória; para medir contra o MySQL passe -Dbenchmark.datasource-url e -Dbenchmark.r2dbc-url,
+    além de -username e -password
+    ./mvnw test -Preactive,benchmark -Dtest=ReactiveStackLoadBenchmarkTest -Dbenchmark.clients=2000
+ */
+@Tag("benchmark")
+public class ReactiveStackLoadBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveStackLoadBenchmarkTest.class);
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 1000);
+    private static final int PLANETS = Integer.getInteger("benchmark.planets", 1000);
+    private static final int POOL_SIZE = Integer.getInteger("benchmark.pool-size", 40);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("benchmark.duration-seconds", 15));
+    private static final String USERNAME = System.getProperty("benchmark.datasource-username", "sa");
+    private static final String PASSWORD = System.getProperty("benchmark.datasource-password", "");
+
+    private static final String[] TERRAINS = {"desert", "mountains", "jungle", "tundra", "swamp"};
+
+    // mistura leituras por id e listagens filtradas, a mesma do ThreadModelLoadBenchmarkTest
+    private static final IntFunction<String> PATHS = random -> (random & 1) == 0
+            ? "/planets/" + (Math.floorMod(random, PLANETS) + 1)
+            : "/planets?limit=20&terrain=" + TERRAINS[Math.floorMod(random, TERRAINS.length)];
+
+    @Test
+    public void compareBlockingAndReactiveStacks() throws Exception {
+        LoadGenerator.Result blocking;
+        LoadGenerator.Result reactive;
+        try (ConfigurableApplicationContext blockingContext = startBlocking()) {
+            String blockingUrl = baseUrl(blockingContext);
+            seed(blockingUrl);
+            blocking = new LoadGenerator().run(blockingUrl, CLIENTS, WARMUP, DURATION, PATHS);
+
+            try (ConfigurableApplicationContext reactiveContext = startReactive()) {
+                reactive = new LoadGenerator().run(baseUrl(reactiveContext), CLIENTS, WARMUP, DURATION, PATHS);
+            }
+        }
+
+        log.info("blocking (Tomcat + JPA):  {}", blocking);
+        log.info("reactive (Netty + R2DBC): {}", reactive);
+
+        assertThat(blocking.requests()).isPositive();
+        assertThat(reactive.requests()).isPositive();
+    }
+
+    // os argumentos de linha de comando têm prioridade sobre o application.properties, que aponta para o MySQL local
+    private ConfigurableApplicationContext startBlocking() {
+        return new SpringApplicationBuilder(StarwarsPlanetApiApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getProperty("benchmark.datasource-url", "jdbc:h2:mem:stack;DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                "--spring.datasource.username=" + USERNAME,
+                "--spring.datasource.password=" + PASSWORD,
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--planets.cache.maximum-size=0",
+                "--planets.load-shedding.rate-limit.enabled=false",
+                "--planets.load-shedding.concurrency-limit.enabled=false");
+    }
+
+    // o mesmo número de conexões da API padrão, para a diferença vir do modelo de threads e não do tamanho do pool
+    private ConfigurableApplicationContext startReactive() {
+        return new SpringApplicationBuilder(ReactivePlanetApiApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(
+                        "--server.port=0",
+                        "--spring.r2dbc.url=" + System.getProperty("benchmark.r2dbc-url", "r2dbc:h2:mem:///stack;DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                        "--spring.r2dbc.username=" + USERNAME,
+                        "--spring.r2dbc.password=" + PASSWORD,
+                        "--spring.r2dbc.pool.initial-size=" + POOL_SIZE,
+                        "--spring.r2dbc.pool.max-size=" + POOL_SIZE);
+    }
+
+    private static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    private void seed(String baseUrl) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= PLANETS; i++) {
+            ndjson.append(String.format("{\"name\":\"planet-%d\",\"climate\":\"temperate\",\"terrain\":\"%s\"}%n", i, TERRAINS[i % TERRAINS.length]));
+        }
+        RestClient.create(baseUrl).post().uri("/planets/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjson.toString())
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -0,0 +1,163 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    sobe a variante reativa no Netty, com um H2 pelo R2DBC e as tabelas do reactive_schema.sql
+    as respostas são conferidas contra o mesmo contrato do PlanetControllerTest
+    o H2 roda no modo MySQL para entender o ON DUPLICATE KEY UPDATE das contagens de planet_facets
+ */
+@SpringBootTest(classes = ReactivePlanetApiApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:reactive_schema.sql"})
+@ActiveProfiles("reactive")
+public class ReactivePlanetControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @AfterEach
+    public void tearDown() {
+        Flux.concat(databaseClient.sql("DELETE FROM planet_changes").then(), databaseClient.sql("DELETE FROM planet_facets").then(),
+                databaseClient.sql("DELETE FROM planets").then()).blockLast();
+    }
+
+    @Test
+    public void createPlanet_ComDadosValidos_ReturnaCreatedEGravaTagsELog() {
+        Planet created = create(PLANET);
+
+        assertThat(created.getId()).isNotNull();
+        assertThat(created.getName()).isEqualTo(PLANET.getName());
+        assertThat(databaseClient.sql("SELECT COUNT(*) AS total FROM planet_tags WHERE planet_id = :id").bind("id", created.getId())
+                .map(row -> row.get("total", Long.class)).one().block()).isPositive();
+        assertThat(databaseClient.sql("SELECT type FROM planet_changes").map(row -> row.get("type", String.class)).all().collectList().block())
+                .containsExactly("CREATED");
+        assertThat(databaseClient.sql("SELECT planets FROM planet_facets WHERE climate = :climate AND terrain = ''")
+                .bind("climate", Planet.normalize(PLANET.getClimate()))
+                .map(row -> row.get("planets", Long.class)).one().block()).isEqualTo(1L);
+    }
+
+    @Test
+    public void createPlanet_ComDadosInvalidos_ReturnaUnprocessableEntity() {
+        webTestClient.post().uri("/planets").bodyValue(INVALID_PLANET).exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    public void createPlanet_ComNomeExistente_ReturnaConflict() {
+        create(PLANET);
+
+        webTestClient.post().uri("/planets").bodyValue(PLANET).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    public void getPlanet_PorIdENome_ReturnaPlanetaOuNotFound() {
+        Planet created = create(PLANET);
+
+        webTestClient.get().uri("/planets/{id}", created.getId()).exchange()
+                .expectStatus().isOk()
+                .expectBody(Planet.class).isEqualTo(created);
+        webTestClient.get().uri("/planets/name/{name}", PLANET.getName()).exchange()
+                .expectStatus().isOk()
+                .expectBody(Planet.class).isEqualTo(created);
+        webTestClient.get().uri("/planets/{id}", created.getId() + 1).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void listPlanets_ComFiltro_ReturnaSoOsPlanetasComAsTags() {
+        Planet tatooine = create(TATOOINE);
+        create(ALDERAAN);
+        create(YAVINIV);
+
+        webTestClient.get().uri("/planets?terrain={terrain}&climate={climate}", TATOOINE.getTerrain(), TATOOINE.getClimate()).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Planet.class).isEqualTo(List.of(tatooine));
+        webTestClient.get().uri("/planets?match=sometimes").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void listPlanets_ComLimit_ReturnaPaginasPeloCursor() {
+        List<Planet> planets = List.of(create(TATOOINE), create(ALDERAAN), create(YAVINIV));
+
+        String cursor = webTestClient.get().uri("/planets?limit=2").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ReactivePlanetController.NEXT_CURSOR_HEADER)
+                .expectBodyList(Planet.class).isEqualTo(planets.subList(0, 2))
+                .returnResult().getResponseHeaders().getFirst(ReactivePlanetController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get().uri("/planets?limit=2&after={cursor}", cursor).exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ReactivePlanetController.NEXT_CURSOR_HEADER)
+                .expectBodyList(Planet.class).isEqualTo(planets.subList(2, 3));
+        webTestClient.get().uri("/planets?limit=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // cada linha vira um elemento do Flux assim que chega, e o cliente consome um planeta de cada vez
+    @Test
+    public void streamPlanets_EmNdjson_EntregaConformeOClientePede() {
+        List<Planet> planets = List.of(create(TATOOINE), create(ALDERAAN), create(YAVINIV));
+
+        Flux<Planet> body = webTestClient.get().uri("/planets").accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Planet.class).getResponseBody();
+
+        StepVerifier.create(body, 1)
+                .expectNext(planets.get(0))
+                .thenRequest(1)
+                .expectNext(planets.get(1))
+                .thenRequest(1)
+                .expectNext(planets.get(2))
+                .verifyComplete();
+    }
+
+    @Test
+    public void removePlanet_PorIdExistenteEInexistente_ReturnaNoContentENotFound() {
+        Planet created = create(PLANET);
+
+        webTestClient.delete().uri("/planets/{id}", created.getId()).exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/planets/{id}", created.getId()).exchange()
+                .expectStatus().isNotFound();
+        assertThat(databaseClient.sql("SELECT type FROM planet_changes ORDER BY sequence").map(row -> row.get("type", String.class)).all()
+                .collectList().block()).containsExactly("CREATED", "DELETED");
+        assertThat(databaseClient.sql("SELECT COUNT(*) AS total FROM planet_facets WHERE planets <> 0").map(row -> row.get("total", Long.class)).one().block())
+                .isZero();
+    }
+
+    private Planet create(Planet planet) {
+        return webTestClient.post().uri("/planets")
+                .bodyValue(new Planet(planet.getName(), planet.getClimate(), planet.getTerrain()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Planet.class)
+                .returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,32 @@
+CREATE TABLE IF NOT EXISTS planets (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE,
+    climate VARCHAR(255) NOT NULL,
+    terrain VARCHAR(255) NOT NULL,
+    climate_normalized VARCHAR(255),
+    terrain_normalized VARCHAR(255),
+    version BIGINT NOT NULL,
+    updated_at TIMESTAMP(6) WITH TIME ZONE
+);
+CREATE TABLE IF NOT EXISTS planet_tags (
+    planet_id BIGINT NOT NULL REFERENCES planets (id) ON DELETE CASCADE,
+    dimension ENUM('CLIMATE', 'TERRAIN') NOT NULL,
+    tag VARCHAR(255) NOT NULL,
+    PRIMARY KEY (planet_id, dimension, tag)
+);
+CREATE TABLE IF NOT EXISTS planet_changes (
+    sequence BIGINT AUTO_INCREMENT PRIMARY KEY,
+    planet_id BIGINT NOT NULL,
+    type ENUM('CREATED', 'UPDATED', 'DELETED') NOT NULL,
+    name VARCHAR(255),
+    climate VARCHAR(255),
+    terrain VARCHAR(255),
+    changed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS planet_facets (
+    climate VARCHAR(255) NOT NULL,
+    terrain VARCHAR(255) NOT NULL,
+    planets BIGINT NOT NULL,
+    PRIMARY KEY (climate, terrain)
+);
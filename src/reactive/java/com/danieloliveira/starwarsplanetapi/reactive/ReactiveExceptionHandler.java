@@ -0,0 +1,56 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import com.danieloliveira.starwarsplanetapi.web.InvalidFilterException;
+import com.danieloliveira.starwarsplanetapi.web.InvalidPageRequestException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+// os mesmos status e a mesma métrica planets.errors do GeneralExceptionHandler, para os clientes não verem diferença
+@Profile("reactive")
+@ControllerAdvice
+public class ReactiveExceptionHandler {
+    private final MeterRegistry meterRegistry;
+
+    public ReactiveExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // o @Valid do WebFlux lança WebExchangeBindException, que por padrão seria um 400
+    @ExceptionHandler(WebExchangeBindException.class)
+    private ResponseEntity<Object> handleInvalidPlanet(WebExchangeBindException exception) {
+        return error(HttpStatus.UNPROCESSABLE_ENTITY, exception);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    private ResponseEntity<Object> handleConflict(DataIntegrityViolationException exception) {
+        return error(HttpStatus.CONFLICT, exception);
+    }
+
+    @ExceptionHandler(EmptyResultDataAccessException.class)
+    private ResponseEntity<Object> handleNotFound(EmptyResultDataAccessException exception) {
+        return error(HttpStatus.NOT_FOUND, exception);
+    }
+
+    @ExceptionHandler({InvalidFilterException.class, InvalidPageRequestException.class})
+    private ResponseEntity<Object> handleBadRequest(RuntimeException exception) {
+        return error(HttpStatus.BAD_REQUEST, exception);
+    }
+
+    private ResponseEntity<Object> error(HttpStatus status, Exception exception) {
+        Counter.builder("planets.errors")
+                .description("Erros tratados pelo ReactiveExceptionHandler")
+                .tag("status", String.valueOf(status.value()))
+                .tag("exception", exception.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+        return ResponseEntity.status(status).body(exception.getMessage());
+    }
+}
@@ -0,0 +1,34 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+/*
+    variante reativa da API: o mesmo contrato de /planets no WebFlux, com o banco acessado pelo R2DBC
+    nenhuma requisição prende uma thread enquanto espera o banco; poucas threads do Netty atendem todas as conexões
+    a varredura de componentes fica só neste pacote, então o JPA, os filtros do Tomcat e os caches da API padrão não sobem
+    o @Profile impede que a aplicação padrão, que varre os pacotes abaixo do dela, carregue esta classe
+ */
+@Profile("reactive")
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+public class ReactivePlanetApiApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactivePlanetApiApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(args);
+    }
+
+    // o Tomcat da API padrão também está no classpath e seria escolhido primeiro; o servidor precisa ser o Netty
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
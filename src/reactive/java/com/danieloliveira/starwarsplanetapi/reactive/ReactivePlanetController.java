@@ -0,0 +1,114 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.web.InvalidFilterException;
+import com.danieloliveira.starwarsplanetapi.web.PlanetCursor;
+import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+    o contrato principal de /planets no WebFlux: criar, buscar por id e por nome, listar com os filtros, paginar e apagar
+    as respostas têm os mesmos status, cabeçalhos de paginação e corpos da API padrão; ETag, cache das listagens,
+    fields, CBOR/Smile e os endpoints de lote, busca e mudanças continuam só na API padrão
+ */
+@Profile("reactive")
+@RestController
+@RequestMapping("/planets")
+public class ReactivePlanetController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final ReactivePlanetService planetService;
+
+    public ReactivePlanetController(ReactivePlanetService planetService) {
+        this.planetService = planetService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Planet>> create(@RequestBody @Valid Planet planet) {
+        return planetService.create(planet).map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Planet>> getPlanetById(@PathVariable Long id) {
+        return planetService.get(id).map(ResponseEntity::ok)
+                .switchIfEmpty(Mono.error(() -> new EmptyResultDataAccessException("No planet found with id " + id, 1)));
+    }
+
+    @GetMapping("name/{name}")
+    public Mono<ResponseEntity<Planet>> getByName(@PathVariable String name) {
+        return planetService.getByName(name).map(ResponseEntity::ok)
+                .switchIfEmpty(Mono.error(() -> new EmptyResultDataAccessException("No planet found with name " + name, 1)));
+    }
+
+    /*
+        sem limit nem after, o array JSON é escrito conforme os planetas saem do banco, sem montar a lista em memória
+        com paginação, a página é lida com um planeta a mais para saber se existe uma próxima
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Flux<Planet>>> getAll(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate,
+                                                     @RequestParam(required = false) String match,
+                                                     @RequestParam(required = false) Integer limit, @RequestParam(required = false) String after,
+                                                     ServerHttpRequest request) {
+        PlanetFilter filter = filter(terrain, climate, match);
+        if (limit == null && after == null) {
+            return Mono.just(ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(planetService.list(filter)));
+        }
+
+        int pageSize = PlanetCursor.limit(limit);
+        long afterId = PlanetCursor.decode(after);
+        return planetService.page(filter, afterId, pageSize + 1).collectList().map(planets -> {
+            if (planets.size() <= pageSize) {
+                return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(Flux.fromIterable(planets));
+            }
+            List<Planet> page = planets.subList(0, pageSize);
+            String cursor = PlanetCursor.encode(page.getLast().getId());
+            String next = UriComponentsBuilder.fromUri(request.getURI())
+                    .replaceQueryParam("limit", pageSize)
+                    .replaceQueryParam("after", cursor)
+                    .toUriString();
+            return ResponseEntity.ok()
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .header(NEXT_CURSOR_HEADER, cursor)
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                    .body(Flux.fromIterable(page));
+        });
+    }
+
+    // um planeta por linha; o Netty só pede a próxima linha ao banco quando o cliente já recebeu as anteriores
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Planet> stream(@RequestParam(required = false) String terrain, @RequestParam(required = false) String climate,
+                               @RequestParam(required = false) String match) {
+        return planetService.list(filter(terrain, climate, match));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> remove(@PathVariable("id") Long id) {
+        return planetService.remove(id).thenReturn(ResponseEntity.noContent().build());
+    }
+
+    private static PlanetFilter filter(String terrain, String climate, String match) {
+        if (match == null) {
+            return PlanetFilter.of(terrain, climate);
+        }
+        try {
+            return PlanetFilter.of(terrain, climate, PlanetFilter.Match.valueOf(match.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidFilterException("match must be one of all, any, exact");
+        }
+    }
+}
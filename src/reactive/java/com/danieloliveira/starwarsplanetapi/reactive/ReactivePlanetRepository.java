@@ -0,0 +1,175 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetChange;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFacet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilterSql;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetTag;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+
+/*
+    as mesmas tabelas da API padrão, lidas e gravadas com SQL pelo DatabaseClient
+    o Planet é uma entidade do JPA, com colunas que o mapeamento do Spring Data R2DBC não conhece, então cada linha
+    é montada à mão, como no PlanetUpsertService
+    os planetas saem do banco conforme o cliente consome: o driver só busca mais linhas quando o Flux pede
+ */
+@Profile("reactive")
+@Repository
+public class ReactivePlanetRepository {
+    private static final String SELECT_PLANET = "SELECT p.id, p.name, p.climate, p.terrain FROM planets p";
+    private static final String INSERT_PLANET = "INSERT INTO planets (name, climate, terrain, climate_normalized, terrain_normalized,"
+            + " version, updated_at) VALUES (:name, :climate, :terrain, :climateNormalized, :terrainNormalized, 0, :updatedAt)";
+    private static final String INSERT_TAG = "INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (:planetId, %s, :tag)";
+    private static final String INSERT_CHANGE = "INSERT INTO planet_changes (planet_id, type, name, climate, terrain, changed_at)"
+            + " VALUES (:planetId, %s, :name, :climate, :terrain, :changedAt)";
+    private static final String UPSERT_FACET = "INSERT INTO planet_facets (climate, terrain, planets) VALUES (:climate, :terrain, :planets)"
+            + " ON DUPLICATE KEY UPDATE planets = planets + :delta";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePlanetRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Planet> findById(long id) {
+        return databaseClient.sql(SELECT_PLANET + " WHERE p.id = :id")
+                .bind("id", id)
+                .map(ReactivePlanetRepository::planet)
+                .one();
+    }
+
+    public Mono<Planet> findByName(String name) {
+        return databaseClient.sql(SELECT_PLANET + " WHERE p.name = :name")
+                .bind("name", name)
+                .map(ReactivePlanetRepository::planet)
+                .one();
+    }
+
+    public Flux<Planet> findByFilter(PlanetFilter filter) {
+        return bind(databaseClient.sql(SELECT_PLANET + PlanetFilterSql.where(filter, false) + " ORDER BY p.id"), filter)
+                .map(ReactivePlanetRepository::planet)
+                .all();
+    }
+
+    public Flux<Planet> findPage(PlanetFilter filter, long after, int limit) {
+        return bind(databaseClient.sql(SELECT_PLANET + PlanetFilterSql.where(filter, true) + " ORDER BY p.id LIMIT :limit"), filter)
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(ReactivePlanetRepository::planet)
+                .all();
+    }
+
+    // o planeta, as tags, a linha do log de mudanças e as contagens são gravados pelo ReactivePlanetService na mesma transação
+    public Mono<Planet> insert(Planet planet) {
+        return databaseClient.sql(INSERT_PLANET)
+                .bind("name", planet.getName())
+                .bind("climate", planet.getClimate())
+                .bind("terrain", planet.getTerrain())
+                .bind("climateNormalized", Planet.normalize(planet.getClimate()))
+                .bind("terrainNormalized", Planet.normalize(planet.getTerrain()))
+                .bind("updatedAt", Instant.now())
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> new Planet(id, planet.getName(), planet.getClimate(), planet.getTerrain()));
+    }
+
+    public Mono<Void> insertTags(Planet planet) {
+        return Flux.fromIterable(PlanetTag.of(planet))
+                .concatMap(tag -> databaseClient.sql(INSERT_TAG.formatted(literal(tag.getDimension())))
+                        .bind("planetId", tag.getPlanetId())
+                        .bind("tag", tag.getTag())
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+
+    // as tags vão junto pela chave estrangeira com ON DELETE CASCADE
+    public Mono<Long> deleteById(long id) {
+        return databaseClient.sql("DELETE FROM planets WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // as mesmas contagens do PlanetFacetCounts, para GET /planets/facets da API padrão continuar certo
+    public Mono<Void> addFacets(Planet planet) {
+        return applyFacets(PlanetFacet.count(PlanetTag.of(planet), 1));
+    }
+
+    // roda antes do DELETE, enquanto as tags existem; o FOR UPDATE espera um DELETE concorrente do mesmo planeta
+    public Mono<Void> removeFacets(long id) {
+        return databaseClient.sql("SELECT planet_id, dimension, tag FROM planet_tags WHERE planet_id = :id FOR UPDATE")
+                .bind("id", id)
+                .map(row -> new PlanetTag(row.get("planet_id", Long.class), PlanetTag.Dimension.valueOf(row.get("dimension", String.class)),
+                        row.get("tag", String.class)))
+                .all()
+                .collectList()
+                .flatMap(tags -> applyFacets(PlanetFacet.count(tags, -1)));
+    }
+
+    public Mono<Void> recordCreated(Planet planet) {
+        return databaseClient.sql(INSERT_CHANGE.formatted(literal(PlanetChange.Type.CREATED)))
+                .bind("planetId", planet.getId())
+                .bind("name", planet.getName())
+                .bind("climate", planet.getClimate())
+                .bind("terrain", planet.getTerrain())
+                .bind("changedAt", Instant.now())
+                .then();
+    }
+
+    public Mono<Void> recordDeleted(long id) {
+        return databaseClient.sql(INSERT_CHANGE.formatted(literal(PlanetChange.Type.DELETED)))
+                .bind("planetId", id)
+                .bindNull("name", String.class)
+                .bindNull("climate", String.class)
+                .bindNull("terrain", String.class)
+                .bind("changedAt", Instant.now())
+                .then();
+    }
+
+    // um upsert por linha, na ordem das chaves, como no PlanetFacetCounts; um desconto sem linha entra como zero
+    private Mono<Void> applyFacets(SortedMap<PlanetFacet.Key, Long> counts) {
+        return Flux.fromIterable(counts.entrySet())
+                .concatMap(entry -> databaseClient.sql(UPSERT_FACET)
+                        .bind("climate", entry.getKey().getClimate())
+                        .bind("terrain", entry.getKey().getTerrain())
+                        .bind("planets", Math.max(entry.getValue(), 0))
+                        .bind("delta", entry.getValue())
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+
+    private static Planet planet(Readable row) {
+        return new Planet(row.get("id", Long.class), row.get("name", String.class), row.get("climate", String.class),
+                row.get("terrain", String.class));
+    }
+
+    /*
+        as colunas de enum (dimension e type) vão como literal no SQL: o r2dbc-h2 envia todo String como CLOB,
+        que o H2 não converte para as colunas ENUM criadas pelo Hibernate
+        os valores saem das constantes dos enums, nunca da requisição
+     */
+    private static String literal(Enum<?> value) {
+        return "'" + value.name() + "'";
+    }
+
+    // os parâmetros do filtro saem do PlanetFilterSql, o mesmo SQL da exportação
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, PlanetFilter filter) {
+        for (Map.Entry<String, Object> parameter : PlanetFilterSql.parameters(filter).entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec;
+    }
+}
@@ -0,0 +1,63 @@
+package com.danieloliveira.starwarsplanetapi.reactive;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+    as escritas gravam o planeta, as tags, o log de mudanças e as contagens por tag na mesma transação, como o PlanetService,
+    então o índice de tags, o GET /planets/changes e o GET /planets/facets da API padrão continuam certos quando as duas
+    variantes usam o mesmo banco
+    não há cache nem índice de nomes em memória: cada leitura vai ao banco, que é o que o benchmark compara
+ */
+@Profile("reactive")
+@Service
+public class ReactivePlanetService {
+    private final ReactivePlanetRepository planetRepository;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactivePlanetService(ReactivePlanetRepository planetRepository, TransactionalOperator transactionalOperator) {
+        this.planetRepository = planetRepository;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<Planet> create(Planet planet) {
+        return planetRepository.insert(planet)
+                .flatMap(created -> planetRepository.insertTags(created)
+                        .then(planetRepository.recordCreated(created))
+                        .then(planetRepository.addFacets(created))
+                        .thenReturn(created))
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<Planet> get(long id) {
+        return planetRepository.findById(id);
+    }
+
+    public Mono<Planet> getByName(String name) {
+        return planetRepository.findByName(name);
+    }
+
+    public Flux<Planet> list(PlanetFilter filter) {
+        return planetRepository.findByFilter(filter);
+    }
+
+    public Flux<Planet> page(PlanetFilter filter, long after, int limit) {
+        return planetRepository.findPage(filter, after, limit);
+    }
+
+    // nenhuma linha apagada quer dizer que o planeta não existe, o que vira um 404 no ReactiveExceptionHandler
+    public Mono<Void> remove(long id) {
+        return planetRepository.removeFacets(id)
+                .then(planetRepository.deleteById(id))
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.<Void>error(new EmptyResultDataAccessException("No planet found with id " + id, 1))
+                        : planetRepository.recordDeleted(id))
+                .as(transactionalOperator::transactional);
+    }
+}
@@ -0,0 +1,55 @@
+package com.danieloliveira.starwarsplanetapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+
+/*
+    sobe a aplicação com um H2 em memória e confere que o endpoint do Prometheus expõe os histogramas e contadores
+    os testes do Spring Boot desligam a exportação de métricas por padrão; o @AutoConfigureObservability religa
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void prometheus_ExposesLatencyHistogramsAndErrorCounters() throws Exception {
+        String planet = "{\"name\":\"Hoth\",\"climate\":\"frozen\",\"terrain\":\"tundra\"}";
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").content(planet).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").content(planet).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=tundra"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(allOf(
+                        containsString("http_server_requests_seconds_bucket{"),
+                        containsString("uri=\"/planets\""),
+                        containsString("spring_data_repository_invocations_seconds_bucket{"),
+                        containsString("method=\"findByFilter\""),
+                        containsString("hikaricp_connections_acquire_seconds_bucket{"),
+                        containsString("planets_list_size_planets_bucket{"),
+                        containsString("planets_concurrency_limit "),
+                        containsString("planets_ratelimit_global_available "),
+                        containsString("planets_errors_total{exception=\"DataIntegrityViolationException\",status=\"409\"} 1.0"))));
+    }
+}
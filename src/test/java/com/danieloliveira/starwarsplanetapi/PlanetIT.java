@@ -6,12 +6,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.util.List;
+import java.util.Map;
+
 import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.PLANET;
 import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.TATOOINE;
 
@@ -98,6 +104,22 @@ public class PlanetIT {
         Assertions.assertThat(sut.getBody()[0]).isEqualTo(TATOOINE);
     }
 
+    /*
+        com rewriteBatchedStatements o driver pode devolver SUCCESS_NO_INFO no lugar das linhas afetadas de cada item do batch
+        a segunda carga soma nas linhas de planet_facets que a primeira criou e cria as que ainda não existem
+     */
+    @Test
+    public void createBatch_WithRewrittenBatches_KeepsFacetCounts() {
+        postBatch(List.of(new Planet("Hoth", "frozen", "tundra, ice caves"), new Planet("Ilum", "frozen", "tundra")));
+        postBatch(List.of(new Planet("Orto Plutonia", "frozen", "plains"), new Planet("Jakku", "arid", "desert")));
+
+        ResponseEntity<Map> sut = restTemplate.getForEntity("/planets/facets", Map.class);
+
+        Assertions.assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat((Map<String, Integer>) sut.getBody().get("climate")).containsEntry("frozen", 3).containsEntry("arid", 1);
+        Assertions.assertThat((Map<String, Integer>) sut.getBody().get("terrain")).containsEntry("tundra", 2).containsEntry("plains", 1);
+    }
+
     @Test
     public void removePlanet_ReturnsNoContent() {
         ResponseEntity<Void> sut = restTemplate.exchange("/planets/" + TATOOINE.getId(), HttpMethod.DELETE, null, Void.class);
@@ -105,4 +127,10 @@ public class PlanetIT {
         Assertions.assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
     }
 
+    private void postBatch(List<Planet> planets) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.postForEntity("/planets/batch", new HttpEntity<>(planets, headers), String.class);
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
 }
@@ -0,0 +1,137 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.StarwarsPlanetApiApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    compara GET /planets, que monta a lista de entidades e o array JSON inteiro, com GET /planets/export, que escreve
+    as linhas direto do ResultSet, lendo o catálogo inteiro pelos dois endereços
+    mostra a mediana do tempo, as linhas por segundo e o pico de heap usado durante as requisições
+    o cache de respostas e o catálogo em memória ficam desligados, para as duas leituras irem ao banco
+    ./mvnw test -Pbenchmark -Dtest=PlanetExportBenchmarkTest -Dbenchmark.rows=1000000
+ */
+@Tag("benchmark")
+public class PlanetExportBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(PlanetExportBenchmarkTest.class);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5);
+
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky"};
+    private static final String[] TERRAINS = {"desert", "grasslands, mountains", "jungle, rainforests", "tundra, ice caves", "swamp"};
+
+    @Test
+    public void compareListAndExport() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            seed(context.getBean(JdbcTemplate.class));
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newHttpClient();
+
+            Result list = measure(client, baseUrl + "/planets", "application/json");
+            Result ndjson = measure(client, baseUrl + "/planets/export", "*/*");
+            Result csv = measure(client, baseUrl + "/planets/export?format=csv", "*/*");
+
+            log.info("rows={}", ROWS);
+            log.info("GET /planets:                   {}", list);
+            log.info("GET /planets/export:            {}", ndjson);
+            log.info("GET /planets/export?format=csv: {}", csv);
+
+            assertThat(list.bytes()).isPositive();
+            assertThat(ndjson.bytes()).isPositive();
+            assertThat(csv.bytes()).isPositive();
+        }
+    }
+
+    // os argumentos de linha de comando têm prioridade sobre o application.properties, que aponta para o MySQL local
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(StarwarsPlanetApiApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getProperty("benchmark.datasource-url", "jdbc:h2:mem:export;DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                "--spring.datasource.username=" + System.getProperty("benchmark.datasource-username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.datasource-password", ""),
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--planets.list-cache.maximum-size=0",
+                "--planets.load-shedding.rate-limit.enabled=false",
+                "--planets.load-shedding.concurrency-limit.enabled=false");
+    }
+
+    // direto pelo JDBC, porque a carga pela API levaria mais tempo que a medição; a listagem sem filtro não lê planet_tags
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            String climate = CLIMATES[i % CLIMATES.length];
+            String terrain = TERRAINS[i % TERRAINS.length];
+            batch.add(new Object[]{"planet-" + i, climate, terrain, climate, terrain, now});
+            if (batch.size() == 10_000 || i == ROWS) {
+                jdbcTemplate.batchUpdate("INSERT INTO planets (name, climate, terrain, climate_normalized, terrain_normalized,"
+                        + " version, updated_at) VALUES (?, ?, ?, ?, ?, 0, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // a primeira requisição aquece o caminho e não entra na mediana
+    private Result measure(HttpClient client, String url, String accept) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Accept", accept).build();
+        read(client, request);
+
+        long[] samples = new long[ITERATIONS];
+        long bytes = 0;
+        long peakHeap = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            System.gc();
+            List<MemoryPoolMXBean> pools = heapPools();
+            pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long start = System.nanoTime();
+            bytes = read(client, request);
+            samples[i] = System.nanoTime() - start;
+            peakHeap = Math.max(peakHeap, pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum());
+        }
+        Arrays.sort(samples);
+        return new Result(samples[ITERATIONS / 2], bytes, peakHeap);
+    }
+
+    private static long read(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+        try (InputStream body = response.body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+    }
+
+    private record Result(long medianNanos, long bytes, long peakHeapBytes) {
+        @Override
+        public String toString() {
+            return String.format("median=%.1f ms, %.0f rows/s, %.1f MB of body, peak heap %.0f MB",
+                    medianNanos / 1e6, ROWS / (medianNanos / 1e9), bytes / 1e6, peakHeapBytes / (1024.0 * 1024));
+        }
+    }
+}
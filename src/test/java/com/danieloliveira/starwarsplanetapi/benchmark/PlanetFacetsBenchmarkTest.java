@@ -0,0 +1,119 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFacetCounts;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFacets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    compara as contagens por tag lidas de planet_facets com as mesmas contagens feitas na hora com GROUP BY em planet_tags
+    a primeira lê uma linha por tag, a segunda passa por todas as tags de todos os planetas
+    roda só com o profile de benchmark: ./mvnw test -Pbenchmark -Dtest=PlanetFacetsBenchmarkTest -Dbenchmark.rows=1000000
+ */
+@Tag("benchmark")
+@DataJpaTest
+// o rebuild abre a própria transação, então a carga precisa estar commitada e é apagada no fim
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"/remove_planets.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetFacetsBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(PlanetFacetsBenchmarkTest.class);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int ITERATIONS = 20;
+
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky", "windy", "hot", "humid",
+            "polluted", "artificial temperate", "superheated", "subarctic", "rocky", "moist", "arctic", "unknown"};
+    private static final String[] TERRAINS = {"desert", "grasslands", "mountains", "jungle", "rainforests", "tundra",
+            "ice caves", "swamp", "gas giant", "forests", "lakes", "cityscape", "ocean", "rock", "volcanoes", "plains",
+            "savannas", "canyons", "sinkholes", "barren"};
+
+    private static final String SCAN_TERRAINS = "SELECT t.tag, COUNT(*) FROM planet_tags t"
+            + " WHERE t.dimension = 'TERRAIN' AND t.planet_id IN (SELECT c.planet_id FROM planet_tags c WHERE c.dimension = 'CLIMATE' AND c.tag = ?)"
+            + " GROUP BY t.tag ORDER BY COUNT(*) DESC, t.tag";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private PlanetFacetCounts planetFacetCounts;
+
+    // um clima e dois terrenos por planeta; as contagens são montadas de uma vez pelo rebuild
+    @BeforeEach
+    public void seed() {
+        Random random = new Random(42);
+        List<Object[]> planets = new ArrayList<>();
+        List<Object[]> tags = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            String climate = CLIMATES[random.nextInt(CLIMATES.length)];
+            String first = TERRAINS[random.nextInt(TERRAINS.length)];
+            String second = TERRAINS[(List.of(TERRAINS).indexOf(first) + 1 + random.nextInt(TERRAINS.length - 1)) % TERRAINS.length];
+            String terrain = first + ", " + second;
+            planets.add(new Object[]{i, "planet-" + i, climate, terrain, climate, terrain});
+            tags.add(new Object[]{i, "CLIMATE", climate});
+            tags.add(new Object[]{i, "TERRAIN", first});
+            tags.add(new Object[]{i, "TERRAIN", second});
+            if (planets.size() == 10_000 || i == ROWS) {
+                jdbcTemplate.batchUpdate("INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, 0)", planets);
+                jdbcTemplate.batchUpdate("INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (?, ?, ?)", tags);
+                planets.clear();
+                tags.clear();
+            }
+        }
+        planetFacetCounts = new PlanetFacetCounts(jdbcTemplate, new TransactionTemplate(transactionManager));
+        planetFacetCounts.rebuild();
+    }
+
+    @Test
+    public void facets_LeemMenosQueOGroupBy() {
+        long scanNanos = median(() -> scan("arid"));
+        long facetNanos = median(() -> planetFacetCounts.facets(null, "arid"));
+
+        log.info("rows={} group by={} ms planet_facets={} ms speedup={}x", ROWS, String.format("%.3f", scanNanos / 1e6),
+                String.format("%.3f", facetNanos / 1e6), String.format("%.1f", (double) scanNanos / facetNanos));
+
+        PlanetFacets facets = planetFacetCounts.facets(null, "arid");
+        assertThat(facets.terrain()).isEqualTo(scan("arid"));
+    }
+
+    private Map<String, Long> scan(String climate) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        jdbcTemplate.query(SCAN_TERRAINS, rs -> {
+            counts.put(rs.getString(1), rs.getLong(2));
+        }, climate);
+        return counts;
+    }
+
+    private static long median(Supplier<?> query) {
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+}
@@ -0,0 +1,98 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    compara o filtro antigo, lower(coluna) = lower(?), com o filtro nas colunas normalizadas
+    roda só com o profile de benchmark: ./mvnw test -Pbenchmark -Dtest=PlanetFilterBenchmarkTest -Dbenchmark.rows=1000000
+ */
+@Tag("benchmark")
+@DataJpaTest
+public class PlanetFilterBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(PlanetFilterBenchmarkTest.class);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int ITERATIONS = 20;
+
+    private static final String[] CLIMATES = {"arid", "temperate", "tropical", "frozen", "murky", "windy", "hot", "humid",
+            "polluted", "artificial temperate", "superheated", "subarctic", "rocky", "moist", "arctic", "unknown"};
+    private static final String[] TERRAINS = {"desert", "grasslands", "mountains", "jungle", "rainforests", "tundra",
+            "ice caves", "swamp", "gas giant", "forests", "lakes", "cityscape", "ocean", "rock", "volcanoes", "plains",
+            "savannas", "canyons", "sinkholes", "barren"};
+
+    private static final String SCAN_QUERY = "SELECT id FROM planets WHERE lower(climate) = lower(?) AND lower(terrain) = lower(?)";
+    private static final String INDEX_QUERY = "SELECT id FROM planets WHERE climate_normalized = ? AND terrain_normalized = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void seed() {
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            String climate = randomCase(CLIMATES[random.nextInt(CLIMATES.length)], random);
+            String terrain = randomCase(TERRAINS[random.nextInt(TERRAINS.length)], random);
+            batch.add(new Object[]{i, "planet-" + i, climate, terrain,
+                    climate.toLowerCase(Locale.ROOT), terrain.toLowerCase(Locale.ROOT)});
+            if (batch.size() == 10_000) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+    }
+
+    @Test
+    public void filterByNormalizedColumns_UsesIndex() {
+        String scanPlan = jdbcTemplate.queryForObject("EXPLAIN " + SCAN_QUERY, String.class, "Arid", "Desert");
+        String indexPlan = jdbcTemplate.queryForObject("EXPLAIN " + INDEX_QUERY, String.class, "arid", "desert");
+
+        long scanNanos = median(SCAN_QUERY, "Arid", "Desert");
+        long indexNanos = median(INDEX_QUERY, "arid", "desert");
+
+        log.info("rows={} lower()={} ms normalized={} ms speedup={}x", ROWS, String.format("%.3f", scanNanos / 1e6),
+                String.format("%.3f", indexNanos / 1e6), String.format("%.1f", (double) scanNanos / indexNanos));
+        log.info("lower() plan: {}", scanPlan);
+        log.info("normalized plan: {}", indexPlan);
+
+        assertThat(indexPlan).containsIgnoringCase("idx_planets_climate_terrain");
+        assertThat(scanPlan).doesNotContainIgnoringCase("idx_planets_climate_terrain");
+        assertThat(jdbcTemplate.queryForList(INDEX_QUERY, Long.class, "arid", "desert"))
+                .hasSameSizeAs(jdbcTemplate.queryForList(SCAN_QUERY, Long.class, "Arid", "Desert"));
+    }
+
+    private long median(String sql, Object... args) {
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            jdbcTemplate.queryForList(sql, Long.class, args);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version)"
+                + " VALUES (?, ?, ?, ?, ?, ?, 0)", batch);
+        batch.clear();
+    }
+
+    private static String randomCase(String value, Random random) {
+        return random.nextBoolean() ? value.toUpperCase(Locale.ROOT) : value;
+    }
+}
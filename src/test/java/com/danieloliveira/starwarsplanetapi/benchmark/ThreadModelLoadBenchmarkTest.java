@@ -0,0 +1,79 @@
+package com.danieloliveira.starwarsplanetapi.benchmark;
+
+import com.danieloliveira.starwarsplanetapi.StarwarsPlanetApiApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    compara p99 e vazão da API rodando no pool de threads do Tomcat e com virtual threads
+    o banco padrão é um H2 em memória; para medir contra o MySQL passe -Dbenchmark.datasource-url, -username e -password
+    ./mvnw test -Pbenchmark -Dtest=ThreadModelLoadBenchmarkTest -Dbenchmark.clients=1000
+ */
+@Tag("benchmark")
+public class ThreadModelLoadBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(ThreadModelLoadBenchmarkTest.class);
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 500);
+    private static final int PLANETS = Integer.getInteger("benchmark.planets", 1000);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("benchmark.duration-seconds", 15));
+
+    private static final String[] TERRAINS = {"desert", "mountains", "jungle", "tundra", "swamp"};
+
+    @Test
+    public void compareThreadModels() throws Exception {
+        LoadGenerator.Result platform = run(false);
+        LoadGenerator.Result virtual = run(true);
+
+        log.info("platform threads: {}", platform);
+        log.info("virtual threads:  {}", virtual);
+
+        assertThat(platform.requests()).isPositive();
+        assertThat(virtual.requests()).isPositive();
+    }
+
+    private LoadGenerator.Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = start(virtualThreads)) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            seed(baseUrl);
+            // mistura leituras por id e listagens filtradas, que sempre vão ao banco porque o cache está desligado
+            return new LoadGenerator().run(baseUrl, CLIENTS, WARMUP, DURATION, random -> (random & 1) == 0
+                    ? "/planets/" + (Math.floorMod(random, PLANETS) + 1)
+                    : "/planets?limit=20&terrain=" + TERRAINS[Math.floorMod(random, TERRAINS.length)]);
+        }
+    }
+
+    // os argumentos de linha de comando têm prioridade sobre o application.properties, que aponta para o MySQL local
+    private ConfigurableApplicationContext start(boolean virtualThreads) {
+        return new SpringApplicationBuilder(StarwarsPlanetApiApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.datasource.url=" + System.getProperty("benchmark.datasource-url", "jdbc:h2:mem:load-" + virtualThreads + ";DB_CLOSE_DELAY=-1;MODE=MySQL"),
+                "--spring.datasource.username=" + System.getProperty("benchmark.datasource-username", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.datasource-password", ""),
+                "--spring.datasource.hikari.maximum-pool-size=40",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--planets.cache.maximum-size=0");
+    }
+
+    private void seed(String baseUrl) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= PLANETS; i++) {
+            ndjson.append(String.format("{\"name\":\"planet-%d\",\"climate\":\"temperate\",\"terrain\":\"%s\"}%n", i, TERRAINS[i % TERRAINS.length]));
+        }
+        RestClient.create(baseUrl).post().uri("/planets/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjson.toString())
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -0,0 +1,80 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    sobe a aplicação com dois H2 em memória, um no papel de primário e outro no de réplica
+    a réplica não recebe as escritas do primário, então dá para ver de qual banco cada consulta leu
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "planets.cache.maximum-size=0",
+        "planets.datasource.routing.enabled=true",
+        "planets.datasource.routing.replicas[0].url=" + DataSourceRoutingConfigurationTest.REPLICA_URL,
+        "planets.datasource.routing.replicas[0].username=sa",
+        "planets.datasource.routing.replicas[0].password="})
+public class DataSourceRoutingConfigurationTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    @Autowired
+    private PlanetService planetService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    // copia o schema criado pelo Hibernate no primário para a réplica, sem os dados
+    @BeforeEach
+    public void setUp(@TempDir Path directory) {
+        JdbcDataSource replicaDataSource = new JdbcDataSource();
+        replicaDataSource.setURL(REPLICA_URL);
+        replicaDataSource.setUser("sa");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        String script = directory.resolve("schema.sql").toString();
+        primary.execute("DELETE FROM planet_tags");
+        primary.execute("DELETE FROM planets");
+        primary.execute("SCRIPT NODATA TO '" + script + "'");
+        replica.execute("DROP ALL OBJECTS");
+        replica.execute("RUNSCRIPT FROM '" + script + "'");
+    }
+
+    @Test
+    public void create_WritesToPrimaryAndReadsComeFromReplica() {
+        Planet hoth = planetService.create(new Planet("Hoth", "frozen", "tundra"));
+
+        assertThat(primary.queryForObject("SELECT count(*) FROM planets", Long.class)).isOne();
+        assertThat(replica.queryForObject("SELECT count(*) FROM planets", Long.class)).isZero();
+        assertThat(planetService.get(hoth.getId())).isEmpty();
+        assertThat(planetService.list(PlanetFilter.of(null, null))).isEmpty();
+
+        replica.update("INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version)"
+                + " VALUES (100, 'Dagobah', 'murky', 'swamp', 'murky', 'swamp', 0)");
+
+        assertThat(planetService.list(PlanetFilter.of(null, null))).extracting(Planet::getName).containsExactly("Dagobah");
+        assertThat(planetService.getByName("Dagobah")).isPresent();
+        assertThat(planetService.getByName("Hoth")).isEmpty();
+    }
+}
@@ -0,0 +1,199 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoadSheddingFilterTest {
+    private static final String PROXY = "10.0.0.1";
+    private final AtomicLong now = new AtomicLong();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ApplicationAvailabilityBean availability;
+
+    @BeforeEach
+    public void setUp() {
+        availability = new ApplicationAvailabilityBean();
+        availability.onApplicationEvent(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+    }
+
+    @Test
+    public void filter_ComClienteAcimaDaTaxa_RetornaTooManyRequests() throws Exception {
+        LoadSheddingFilter filter = filter(rateLimit(1000, 1000, 1, 2), disabledConcurrency());
+
+        assertThat(call(filter, "client-a").getStatus()).isEqualTo(200);
+        assertThat(call(filter, "client-a").getStatus()).isEqualTo(200);
+        MockHttpServletResponse rejected = call(filter, "client-a");
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        // os outros clientes têm o próprio bucket
+        assertThat(call(filter, "client-b").getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("planets.requests.rejected").tag("reason", "client_rate").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void filter_ComClientIdDiferenteACadaRequisicao_UsaOEnderecoDeOrigem() throws Exception {
+        LoadSheddingFilter filter = filter(rateLimit(1000, 1000, 1, 2), disabledConcurrency());
+
+        MockHttpServletResponse response = null;
+        for (int i = 0; i < 3; i++) {
+            response = new MockHttpServletResponse();
+            filter.doFilter(request("192.168.0.7", "random-" + i, "/planets"), response, new MockFilterChain());
+        }
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    public void filter_AtrasDeUmProxyConfiavel_UsaOClientId() throws Exception {
+        LoadSheddingFilter filter = filter(rateLimit(1000, 1000, 1, 1), disabledConcurrency());
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request(PROXY, "client-a", "/planets"), first, new MockFilterChain());
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(request(PROXY, "client-b", "/planets"), second, new MockFilterChain());
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void filter_AcimaDaTaxaGlobal_RetornaServiceUnavailable() throws Exception {
+        LoadSheddingFilter filter = filter(rateLimit(0.5, 2, 100, 100), disabledConcurrency());
+        call(filter, "client-a");
+        call(filter, "client-b");
+
+        MockHttpServletResponse rejected = call(filter, "client-c");
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(meterRegistry.get("planets.requests.rejected").tag("reason", "global_rate").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void filter_AntesDeFicarPronta_NaoLimitaATaxa() throws Exception {
+        availability.onApplicationEvent(new AvailabilityChangeEvent<>(this, ReadinessState.REFUSING_TRAFFIC));
+        LoadSheddingFilter filter = filter(rateLimit(1, 1, 1, 1), disabledConcurrency());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(call(filter, "warmup").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void filter_AcimaDoLimiteDeConcorrencia_RetornaServiceUnavailable() throws Exception {
+        LoadSheddingFilter filter = filter(disabledRateLimit(), new LoadSheddingProperties.ConcurrencyLimit(true, 1, 1, 1));
+        MockHttpServletResponse[] inner = new MockHttpServletResponse[1];
+
+        // a requisição de dentro chega enquanto a de fora ainda ocupa a única vaga
+        FilterChain chain = (request, response) -> {
+            inner[0] = new MockHttpServletResponse();
+            filter.doFilter(request("client-b", "/planets"), inner[0], new MockFilterChain());
+        };
+        filter.doFilter(request("client-a", "/planets"), new MockHttpServletResponse(), chain);
+
+        assertThat(inner[0].getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(inner[0].getHeader("Retry-After")).isEqualTo("1");
+        assertThat(meterRegistry.get("planets.concurrency.inflight").gauge().value()).isZero();
+        // a vaga volta depois que a primeira termina
+        assertThat(call(filter, "client-a").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void filter_NaBusca_NaoUsaOLimiteDeConcorrencia() throws Exception {
+        LoadSheddingFilter filter = filter(disabledRateLimit(), new LoadSheddingProperties.ConcurrencyLimit(true, 1, 1, 1));
+        MockHttpServletResponse[] inner = new MockHttpServletResponse[1];
+
+        FilterChain chain = (request, response) -> {
+            inner[0] = new MockHttpServletResponse();
+            filter.doFilter(request("client-b", "/planets/search"), inner[0], new MockFilterChain());
+        };
+        filter.doFilter(request("client-a", "/planets"), new MockHttpServletResponse(), chain);
+
+        assertThat(inner[0].getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void concurrencyLimit_ComLatenciaSubindo_DiminuiOLimite() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 200);
+
+        // com a latência estável e o limite em uso, ele cresce
+        for (int i = 0; i < 200; i++) {
+            fill(limit, 20);
+            limit.release(10_000_000L);
+            drain(limit);
+        }
+        int grown = limit.limit();
+        assertThat(grown).isGreaterThan(20);
+
+        // o banco começou a enfileirar: a latência passa a ser 10 vezes maior
+        for (int i = 0; i < 50; i++) {
+            fill(limit, limit.limit());
+            limit.release(100_000_000L);
+            drain(limit);
+        }
+        assertThat(limit.limit()).isLessThan(grown / 2).isGreaterThanOrEqualTo(5);
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit, int requests) {
+        for (int i = 0; i < requests; i++) {
+            limit.tryAcquire();
+        }
+    }
+
+    private static void drain(AdaptiveConcurrencyLimit limit) {
+        while (limit.inflight() > 0) {
+            limit.releaseWithoutSample();
+        }
+    }
+
+    private LoadSheddingFilter filter(LoadSheddingProperties.RateLimit rateLimit, LoadSheddingProperties.ConcurrencyLimit concurrencyLimit) {
+        return new LoadSheddingFilter(new LoadSheddingProperties(rateLimit, concurrencyLimit, "X-Client-Id", Set.of(PROXY)), availability,
+                meterRegistry, now::get);
+    }
+
+    private MockHttpServletResponse call(LoadSheddingFilter filter, String client) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(client, "/planets"), response, new MockFilterChain());
+        return response;
+    }
+
+    // cada cliente chega do próprio endereço, como sem proxy
+    private static MockHttpServletRequest request(String client, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(client);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String clientHeader, String uri) {
+        MockHttpServletRequest request = request(remoteAddr, uri);
+        request.addHeader("X-Client-Id", clientHeader);
+        return request;
+    }
+
+    private static LoadSheddingProperties.RateLimit rateLimit(double globalRate, int globalBurst, double clientRate, int clientBurst) {
+        return new LoadSheddingProperties.RateLimit(true, globalRate, globalBurst, clientRate, clientBurst, 1000);
+    }
+
+    private static LoadSheddingProperties.RateLimit disabledRateLimit() {
+        return new LoadSheddingProperties.RateLimit(false, 1, 1, 1, 1, 1);
+    }
+
+    private static LoadSheddingProperties.ConcurrencyLimit disabledConcurrency() {
+        return new LoadSheddingProperties.ConcurrencyLimit(false, 1, 1, 1);
+    }
+}
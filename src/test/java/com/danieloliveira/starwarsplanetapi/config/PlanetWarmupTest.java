@@ -0,0 +1,55 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import com.danieloliveira.starwarsplanetapi.domain.PlanetCache;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import com.danieloliveira.starwarsplanetapi.web.PlanetListResponseCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/*
+    sobe a aplicação com o aquecimento ligado e três planetas já no banco, inseridos antes dos ApplicationRunner
+    quando o contexto fica pronto o aquecimento já terminou, então os caches já devem estar preenchidos
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:warmup;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.defer-datasource-initialization=true",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.data-locations=classpath:import_planets.sql",
+        "planets.warmup.enabled=true",
+        "planets.warmup.iterations=3"})
+public class PlanetWarmupTest {
+
+    @Autowired
+    private PlanetCache planetCache;
+
+    @Autowired
+    private PlanetListResponseCache planetListResponseCache;
+
+    @Autowired
+    private PlanetService planetService;
+
+    @Autowired
+    private ApplicationAvailability availability;
+
+    @Test
+    public void warmup_PreloadsCachesBeforeReadiness() {
+        assertThat(planetCache.get(1L, id -> fail("Tatooine deveria ter sido carregado no aquecimento"))).isPresent();
+        assertThat(planetCache.get(3L, id -> fail("Yavin IV deveria ter sido carregado no aquecimento"))).isPresent();
+
+        // a listagem filtrada só entra nesse cache pelo controller, então as requisições HTTP do aquecimento rodaram
+        assertThat(planetListResponseCache.get(PlanetFilter.of("desert", "arid"))).isNotNull();
+        assertThat(planetService.search("tato", 10)).extracting("name").containsExactly("Tatooine");
+
+        assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+}
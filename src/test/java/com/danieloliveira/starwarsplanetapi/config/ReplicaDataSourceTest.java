@@ -0,0 +1,150 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaDataSourceTest {
+    private final DataSource primary = h2("replica-test-primary");
+    private final DataSource replicaA = h2("replica-test-a");
+    private final DataSource replicaB = h2("replica-test-b");
+
+    private ReadYourWritesTracker tracker;
+    private ReplicaDataSource replicas;
+
+    @BeforeEach
+    public void setUp() {
+        // cada réplica informa o próprio atraso em uma tabela, no lugar do SHOW REPLICA STATUS do MySQL
+        for (DataSource replica : List.of(replicaA, replicaB)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(replica);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS replica_lag (seconds INT)");
+            jdbcTemplate.execute("DELETE FROM replica_lag");
+            jdbcTemplate.execute("INSERT INTO replica_lag VALUES (1)");
+        }
+        tracker = new ReadYourWritesTracker(Duration.ofMinutes(1), "X-Client-Id", Set.of("10.0.0.10"));
+        replicas = new ReplicaDataSource(primary, List.of(replicaA, replicaB), properties(), tracker);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        RequestContextHolder.resetRequestAttributes();
+        replicas.close();
+    }
+
+    @Test
+    public void select_WithHealthyReplicas_AlternatesBetweenThem() {
+        assertThat(List.of(replicas.select(), replicas.select(), replicas.select(), replicas.select()))
+                .containsExactly(replicaA, replicaB, replicaA, replicaB);
+    }
+
+    @Test
+    public void select_WithReplicaBehindTolerance_SkipsIt() {
+        new JdbcTemplate(replicaA).update("UPDATE replica_lag SET seconds = 60");
+        replicas.checkReplicas();
+
+        assertThat(List.of(replicas.select(), replicas.select())).containsOnly(replicaB);
+    }
+
+    @Test
+    public void select_WithoutHealthyReplicas_FallsBackToPrimary() {
+        new JdbcTemplate(replicaA).update("UPDATE replica_lag SET seconds = 60");
+        // sem linha é o mesmo que a replicação parada
+        new JdbcTemplate(replicaB).update("DELETE FROM replica_lag");
+        replicas.checkReplicas();
+
+        assertThat(replicas.select()).isSameAs(primary);
+    }
+
+    @Test
+    public void select_AfterWriteCommit_ReadsFromPrimary() {
+        tracker.afterCommit(new TransactionExecution() {
+            @Override
+            public boolean isNewTransaction() {
+                return true;
+            }
+        }, null);
+
+        assertThat(replicas.select()).isSameAs(primary);
+    }
+
+    @Test
+    public void select_AfterReadOnlyCommit_KeepsReadingFromReplicas() {
+        tracker.afterCommit(new TransactionExecution() {
+            @Override
+            public boolean isNewTransaction() {
+                return true;
+            }
+
+            @Override
+            public boolean isReadOnly() {
+                return true;
+            }
+        }, null);
+
+        assertThat(replicas.select()).isIn(replicaA, replicaB);
+    }
+
+    @Test
+    public void select_ComCabecalhoDeOutroClienteForaDosProxies_IgnoraOCabecalho() {
+        request("10.0.0.20", "alice");
+        tracker.afterCommit(write(), null);
+
+        // o cabeçalho de quem escreveu não faz outro endereço ler do primário
+        request("10.0.0.21", "alice");
+        assertThat(replicas.select()).isIn(replicaA, replicaB);
+        request("10.0.0.20", "bob");
+        assertThat(replicas.select()).isSameAs(primary);
+    }
+
+    @Test
+    public void select_ComCabecalhoVindoDeUmProxyConfiavel_UsaOCabecalho() {
+        request("10.0.0.10", "alice");
+        tracker.afterCommit(write(), null);
+
+        request("10.0.0.10", "bob");
+        assertThat(replicas.select()).isIn(replicaA, replicaB);
+        request("10.0.0.10", "alice");
+        assertThat(replicas.select()).isSameAs(primary);
+    }
+
+    private static void request(String remoteAddr, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Client-Id", client);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private static TransactionExecution write() {
+        return new TransactionExecution() {
+            @Override
+            public boolean isNewTransaction() {
+                return true;
+            }
+        };
+    }
+
+    private static DataSourceRoutingProperties properties() {
+        return new DataSourceRoutingProperties(true, List.of(), Duration.ofSeconds(5), Duration.ofHours(1),
+                "SELECT seconds AS Seconds_Behind_Source FROM replica_lag", "Seconds_Behind_Source", Duration.ofMinutes(1), "X-Client-Id",
+                Set.of("10.0.0.10"));
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,74 @@
+package com.danieloliveira.starwarsplanetapi.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+    // relógio controlado pelo teste, em nanossegundos
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void tryAcquire_DentroDaRajada_DeixaPassar() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.availableTokens()).isZero();
+    }
+
+    @Test
+    public void tryAcquire_AcimaDaRajada_RetornaOTempoAteOProximoToken() {
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+
+        assertThat(bucket.tryAcquire()).isEqualTo(100_000_000L);
+
+        now.addAndGet(40_000_000L);
+        assertThat(bucket.tryAcquire()).isEqualTo(60_000_000L);
+
+        now.addAndGet(60_000_000L);
+        assertThat(bucket.tryAcquire()).isZero();
+    }
+
+    @Test
+    public void tryAcquire_DepoisDeUmTempoParado_RecuperaSoAteARajada() {
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        bucket.tryAcquire();
+
+        now.addAndGet(10_000_000_000L);
+
+        assertThat(bucket.availableTokens()).isEqualTo(2.0);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+    }
+
+    @Test
+    public void tryAcquire_EmVariasThreads_NaoPassaDaRajada() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1000, now::get);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (bucket.tryAcquire() == 0) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(accepted).hasValue(1000);
+    }
+}
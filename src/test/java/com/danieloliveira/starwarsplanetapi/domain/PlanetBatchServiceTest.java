@@ -0,0 +1,134 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.TATOOINE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+// cada bloco da carga abre a própria transação, então o teste não pode rodar dentro da transação do DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"/remove_planets.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetBatchServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    private PlanetBatchService planetBatchService;
+
+    private PlanetNameIndex planetNameIndex;
+
+    private List<Object> events;
+
+    // o H2 só entende o ON DUPLICATE KEY UPDATE das contagens no modo de compatibilidade com o MySQL
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate.execute("SET MODE MySQL");
+        PlanetCache planetCache = new PlanetCache(new PlanetCacheProperties(100, Duration.ofMinutes(1), Duration.ofSeconds(1)));
+        planetNameIndex = new PlanetNameIndex(jdbcTemplate, new PlanetNameIndexProperties(Duration.ofHours(1)));
+        events = new ArrayList<>();
+        // blocos de 2 planetas para a carga passar por mais de um batch
+        planetBatchService = new PlanetBatchService(jdbcTemplate, new TransactionTemplate(transactionManager),
+                Validation.buildDefaultValidatorFactory().getValidator(), planetCache, planetNameIndex, new PlanetChangeLog(jdbcTemplate),
+                new PlanetFacetCounts(jdbcTemplate, new TransactionTemplate(transactionManager)), events::add, new PlanetBatchProperties(2));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("SET MODE REGULAR");
+    }
+
+    @Test
+    public void createAll_ComPlanetasValidos_GravaPlanetasETags() {
+        PlanetBatchResult sut = planetBatchService.createAll(List.of(
+                new Planet("Hoth", "frozen", "tundra, ice caves"),
+                new Planet("Dagobah", "murky", "swamp, jungles"),
+                new Planet("Bespin", "temperate", "gas giant")).iterator());
+
+        assertThat(sut.created()).isEqualTo(3);
+        assertThat(sut.items()).extracting(PlanetBatchResult.Item::status).containsOnly(PlanetBatchResult.Status.CREATED);
+        assertThat(sut.items()).extracting(PlanetBatchResult.Item::id).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(planetRepository.findByFilter(PlanetFilter.of("ice caves", "frozen"))).extracting(Planet::getName).containsExactly("Hoth");
+        assertThat(planetRepository.findByName("Bespin")).get().extracting(Planet::getId).isEqualTo(sut.items().get(2).id());
+        assertThat(planetNameIndex.search("dago", 10)).extracting(PlanetNameMatch::id).containsExactly(sut.items().get(1).id());
+        // um evento por bloco de 2 planetas
+        assertThat(events).containsExactly(
+                new PlanetsChangedEvent(List.of(sut.items().get(0).id(), sut.items().get(1).id())),
+                new PlanetsChangedEvent(List.of(sut.items().get(2).id())));
+    }
+
+    @Test
+    public void createAll_ComNomesRepetidosEPlanetasInvalidos_ReportaCadaItemSemPararACarga() {
+        planetBatchService.createAll(List.of(new Planet(TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain())).iterator());
+
+        PlanetBatchResult sut = planetBatchService.createAll(List.of(
+                new Planet("Hoth", "frozen", "tundra"),
+                new Planet(TATOOINE.getName(), "arid", "desert"),
+                new Planet("", "murky", "swamp"),
+                new Planet("Hoth", "frozen", "tundra"),
+                new Planet("Bespin", "temperate", "gas giant")).iterator());
+
+        assertThat(sut.created()).isEqualTo(2);
+        assertThat(sut.conflicts()).isEqualTo(2);
+        assertThat(sut.invalid()).isEqualTo(1);
+        assertThat(sut.items()).extracting(PlanetBatchResult.Item::status).containsExactly(
+                PlanetBatchResult.Status.CREATED,
+                PlanetBatchResult.Status.CONFLICT,
+                PlanetBatchResult.Status.INVALID,
+                PlanetBatchResult.Status.CONFLICT,
+                PlanetBatchResult.Status.CREATED);
+        assertThat(planetRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void createAll_ComErroDeLeitura_GravaOsPlanetasLidosEReportaOErro() {
+        Iterator<Planet> planets = new Iterator<>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                if (read == 1) {
+                    throw new IllegalStateException("Unexpected end-of-input");
+                }
+                return true;
+            }
+
+            @Override
+            public Planet next() {
+                if (read++ > 0) {
+                    throw new NoSuchElementException();
+                }
+                return new Planet("Hoth", "frozen", "tundra");
+            }
+        };
+
+        PlanetBatchResult sut = planetBatchService.createAll(planets);
+
+        assertThat(sut.created()).isEqualTo(1);
+        assertThat(sut.invalid()).isEqualTo(1);
+        assertThat(sut.items().getLast().message()).isEqualTo("Unexpected end-of-input");
+    }
+}
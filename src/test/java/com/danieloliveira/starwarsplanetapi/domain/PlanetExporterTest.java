@@ -0,0 +1,78 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PlanetExporterTest {
+    private PlanetExporter planetExporter;
+
+    // as tabelas só precisam das colunas que a exportação e o filtro leem; o fetch size pequeno obriga o driver a buscar em blocos
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:export;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS planets (id BIGINT PRIMARY KEY, name VARCHAR(255), climate VARCHAR(255),"
+                + " terrain VARCHAR(255), climate_normalized VARCHAR(255), terrain_normalized VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS planet_tags (planet_id BIGINT, dimension VARCHAR(16), tag VARCHAR(255))");
+        jdbcTemplate.execute("DELETE FROM planet_tags");
+        jdbcTemplate.execute("DELETE FROM planets");
+        for (Planet planet : List.of(new Planet(3L, "Yavin IV", "temperate, tropical", "jungle, rainforests"),
+                new Planet(1L, "Tatooine", "arid", "desert"),
+                new Planet(2L, "Alderaan", "temperate", "grasslands, mountains"))) {
+            jdbcTemplate.update("INSERT INTO planets VALUES (?, ?, ?, ?, ?, ?)", planet.getId(), planet.getName(), planet.getClimate(),
+                    planet.getTerrain(), Planet.normalize(planet.getClimate()), Planet.normalize(planet.getTerrain()));
+            for (PlanetTag tag : PlanetTag.of(planet)) {
+                jdbcTemplate.update("INSERT INTO planet_tags VALUES (?, ?, ?)", tag.getPlanetId(), tag.getDimension().name(), tag.getTag());
+            }
+        }
+        planetExporter = new PlanetExporter(dataSource, new PlanetExportProperties(2));
+    }
+
+    @Test
+    public void export_SemFiltro_EntregaTodasAsLinhasEmOrdemDeId() throws IOException {
+        List<String> rows = new ArrayList<>();
+        planetExporter.export(PlanetFilter.of(null, null), (id, name, climate, terrain) -> rows.add(id + "|" + name + "|" + climate + "|" + terrain));
+
+        assertThat(rows).containsExactly(
+                "1|Tatooine|arid|desert",
+                "2|Alderaan|temperate|grasslands, mountains",
+                "3|Yavin IV|temperate, tropical|jungle, rainforests");
+    }
+
+    @Test
+    public void export_ComFiltro_SegueAsMesmasRegrasDoQueryBuilder() throws IOException {
+        assertThat(ids(PlanetFilter.of(null, "Temperate"))).containsExactly(2L, 3L);
+        assertThat(ids(PlanetFilter.of("mountains, grasslands", "temperate"))).containsExactly(2L);
+        assertThat(ids(PlanetFilter.of("desert, jungle", null, PlanetFilter.Match.ANY))).containsExactly(1L, 3L);
+        assertThat(ids(PlanetFilter.of(null, "temperate", PlanetFilter.Match.EXACT))).containsExactly(2L);
+        assertThat(ids(PlanetFilter.of("ocean", null))).isEmpty();
+    }
+
+    // o cliente que desconecta no meio da exportação chega aqui como IOException, que sobe sem embrulho
+    @Test
+    public void export_ComErroAoEscrever_InterrompeALeitura() {
+        List<Long> written = new ArrayList<>();
+        assertThatThrownBy(() -> planetExporter.export(PlanetFilter.of(null, null), (id, name, climate, terrain) -> {
+            written.add(id);
+            throw new IOException("Broken pipe");
+        })).isInstanceOf(IOException.class).hasMessage("Broken pipe");
+
+        assertThat(written).containsExactly(1L);
+    }
+
+    private List<Long> ids(PlanetFilter filter) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        planetExporter.export(filter, (id, name, climate, terrain) -> ids.add(id));
+        return ids;
+    }
+}
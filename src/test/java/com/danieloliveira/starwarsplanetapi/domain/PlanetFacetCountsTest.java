@@ -0,0 +1,137 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@DataJpaTest
+// o rebuild abre a própria transação, então o teste não pode rodar dentro da transação do DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"/remove_planets.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetFacetCountsTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    @Autowired
+    private PlanetTagRepository planetTagRepository;
+
+    private PlanetFacetCounts planetFacetCounts;
+
+    // o H2 só entende o ON DUPLICATE KEY UPDATE das contagens no modo de compatibilidade com o MySQL
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate.execute("SET MODE MySQL");
+        planetFacetCounts = new PlanetFacetCounts(jdbcTemplate, new TransactionTemplate(transactionManager));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("SET MODE REGULAR");
+    }
+
+    @Test
+    public void facets_SemFiltro_ContaCadaTagDoMaiorParaOMenor() {
+        save(new Planet("Tatooine", "arid", "desert"), new Planet("Alderaan", "temperate", "grasslands, mountains"),
+                new Planet("Yavin IV", "temperate, tropical", "jungle, rainforests"));
+
+        PlanetFacets sut = planetFacetCounts.facets(null, null);
+
+        assertThat(sut.climate()).containsExactly(entry("temperate", 2L), entry("arid", 1L), entry("tropical", 1L));
+        assertThat(sut.terrain()).containsExactly(entry("desert", 1L), entry("grasslands", 1L), entry("jungle", 1L),
+                entry("mountains", 1L), entry("rainforests", 1L));
+    }
+
+    // cada dimensão é filtrada pela tag pedida na outra
+    @Test
+    public void facets_ComFiltro_ContaSoOsPlanetasComATagDaOutraDimensao() {
+        save(new Planet("Tatooine", "arid", "desert"), new Planet("Geonosis", "temperate, arid", "rock, desert, mountain"),
+                new Planet("Alderaan", "temperate", "grasslands, mountains"));
+
+        PlanetFacets sut = planetFacetCounts.facets("desert", "temperate");
+
+        assertThat(sut.climate()).containsExactly(entry("arid", 2L), entry("temperate", 1L));
+        assertThat(sut.terrain()).containsExactly(entry("desert", 1L), entry("grasslands", 1L), entry("mountain", 1L),
+                entry("mountains", 1L), entry("rock", 1L));
+        assertThat(planetFacetCounts.facets("ocean", null).climate()).isEmpty();
+    }
+
+    // a segunda escrita soma nas linhas que a primeira criou e cria as que faltam, no mesmo batch
+    @Test
+    public void added_EmDuasEscritas_SomaNasLinhasExistentesECriaAsNovas() {
+        save(new Planet("Tatooine", "arid", "desert"));
+        save(new Planet("Geonosis", "temperate, arid", "rock, desert"));
+
+        PlanetFacets sut = planetFacetCounts.facets(null, null);
+
+        assertThat(sut.climate()).containsExactly(entry("arid", 2L), entry("temperate", 1L));
+        assertThat(sut.terrain()).containsExactly(entry("desert", 2L), entry("rock", 1L));
+        assertThat(planetFacetCounts.facets("desert", null).climate()).containsExactly(entry("arid", 2L), entry("temperate", 1L));
+    }
+
+    @Test
+    public void removed_DescontaAsTagsEAsContagensZeradasSaemDaResposta() {
+        List<Planet> planets = save(new Planet("Tatooine", "arid", "desert"), new Planet("Hoth", "frozen", "tundra, desert"));
+
+        planetFacetCounts.removed(List.of(planets.get(0).getId(), 99L));
+        planetRepository.removeById(planets.get(0).getId());
+
+        PlanetFacets sut = planetFacetCounts.facets(null, null);
+        assertThat(sut.climate()).containsExactly(entry("frozen", 1L));
+        assertThat(sut.terrain()).containsExactly(entry("desert", 1L), entry("tundra", 1L));
+        assertThat(planetFacetCounts.facets(null, "arid").terrain()).isEmpty();
+    }
+
+    // a contagem refeita a partir de planet_tags é a mesma que as escritas mantiveram
+    @Test
+    public void rebuild_ChegaNasMesmasContagensDasEscritas() {
+        save(new Planet("Tatooine", "arid", "desert"), new Planet("Geonosis", "temperate, arid", "rock, desert, mountain"));
+        PlanetFacets incremental = planetFacetCounts.facets("desert", null);
+        jdbcTemplate.update("UPDATE planet_facets SET planets = 42");
+
+        planetFacetCounts.rebuild();
+
+        assertThat(planetFacetCounts.facets("desert", null)).isEqualTo(incremental);
+    }
+
+    @Test
+    public void run_ComATabelaVazia_MontaAsContagens() throws Exception {
+        Planet planet = planetRepository.save(new Planet("Tatooine", "arid", "desert"));
+        planetTagRepository.saveAll(PlanetTag.of(planet));
+
+        planetFacetCounts.run(null);
+
+        assertThat(planetFacetCounts.facets(null, null).climate()).containsExactly(entry("arid", 1L));
+    }
+
+    // grava como o PlanetService: o planeta, as tags e depois as contagens
+    private List<Planet> save(Planet... planets) {
+        List<Planet> saved = new ArrayList<>();
+        for (Planet planet : planets) {
+            saved.add(planetRepository.save(planet));
+            planetTagRepository.saveAll(PlanetTag.of(planet));
+        }
+        planetFacetCounts.added(saved);
+        return saved;
+    }
+}
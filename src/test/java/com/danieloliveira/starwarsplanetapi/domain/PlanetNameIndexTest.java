@@ -0,0 +1,140 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanetNameIndexTest {
+    private JdbcTemplate jdbcTemplate;
+    private PlanetNameIndex planetNameIndex;
+
+    // a tabela só precisa das colunas que o índice lê
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:name-index;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS planets (id BIGINT PRIMARY KEY, name VARCHAR(255))");
+        jdbcTemplate.execute("DELETE FROM planets");
+        jdbcTemplate.update("INSERT INTO planets VALUES (1, 'Tatooine'), (2, 'Alderaan'), (3, 'Yavin IV'), (4, 'Tatoo I'), (5, 'Naboo')");
+        planetNameIndex = new PlanetNameIndex(jdbcTemplate, new PlanetNameIndexProperties(Duration.ofHours(1)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        planetNameIndex.destroy();
+    }
+
+    @Test
+    public void search_PorPrefixo_RetornaOsNomesMaisCurtosPrimeiro() {
+        assertThat(planetNameIndex.search("tat", 10)).containsExactly(
+                new PlanetNameMatch(4L, "Tatoo I", 0),
+                new PlanetNameMatch(1L, "Tatooine", 0));
+    }
+
+    @Test
+    public void search_ComNomeExato_RetornaEleNoTopo() {
+        assertThat(planetNameIndex.search("NABOO", 10)).first().isEqualTo(new PlanetNameMatch(5L, "Naboo", 0));
+    }
+
+    @Test
+    public void search_ComErrosDeDigitacao_RetornaNomesParecidos() {
+        assertThat(planetNameIndex.search("tatoonie", 10)).extracting(PlanetNameMatch::name).first().isEqualTo("Tatooine");
+        assertThat(planetNameIndex.search("aldreaan", 10)).containsExactly(new PlanetNameMatch(2L, "Alderaan", 1));
+        assertThat(planetNameIndex.search("yavim", 10)).containsExactly(new PlanetNameMatch(3L, "Yavin IV", 1));
+    }
+
+    @Test
+    public void search_ComPoucasLetras_NaoAceitaErros() {
+        assertThat(planetNameIndex.search("ta", 10)).extracting(PlanetNameMatch::id).containsExactly(4L, 1L);
+        assertThat(planetNameIndex.search("tx", 10)).isEmpty();
+    }
+
+    @Test
+    public void search_ComLimite_RetornaSomenteOsMelhores() {
+        assertThat(planetNameIndex.search("tatoo", 1)).extracting(PlanetNameMatch::id).containsExactly(4L);
+    }
+
+    @Test
+    public void search_SemAcentos_EncontraNomesAcentuados() {
+        planetNameIndex.load();
+        planetNameIndex.add(6L, "Mon Calámari");
+
+        assertThat(planetNameIndex.search("mon cala", 10)).extracting(PlanetNameMatch::name).containsExactly("Mon Calámari");
+    }
+
+    @Test
+    public void addERemove_MantemOIndiceAtualizadoSemRecarregarATabela() {
+        planetNameIndex.search("x", 10);
+        jdbcTemplate.execute("DELETE FROM planets");
+
+        planetNameIndex.add(6L, "Hoth");
+        planetNameIndex.remove(1L);
+
+        assertThat(planetNameIndex.search("hoth", 10)).containsExactly(new PlanetNameMatch(6L, "Hoth", 0));
+        assertThat(planetNameIndex.search("tatooine", 10)).extracting(PlanetNameMatch::id).doesNotContain(1L);
+        assertThat(planetNameIndex.search("tato", 10)).extracting(PlanetNameMatch::id).containsExactly(4L);
+    }
+
+    @Test
+    public void rebuild_TrazOsCreatesERemovesDeOutrasInstancias() {
+        planetNameIndex.load();
+        jdbcTemplate.update("INSERT INTO planets VALUES (6, 'Hoth')");
+        jdbcTemplate.update("DELETE FROM planets WHERE id = 1");
+
+        assertThat(planetNameIndex.search("hoth", 10)).isEmpty();
+        planetNameIndex.rebuild();
+        assertThat(planetNameIndex.search("hoth", 10)).containsExactly(new PlanetNameMatch(6L, "Hoth", 0));
+        assertThat(planetNameIndex.search("tato", 10)).extracting(PlanetNameMatch::id).containsExactly(4L);
+    }
+
+    @Test
+    public void addERemove_DuranteORebuild_NaoSaoPerdidos() throws Exception {
+        CountDownLatch scanned = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a leitura da tabela inteira termina e fica parada, como uma releitura demorada
+        JdbcTemplate slowScan = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                scanned.countDown();
+                await(release);
+            }
+        };
+        planetNameIndex.destroy();
+        planetNameIndex = new PlanetNameIndex(slowScan, new PlanetNameIndexProperties(Duration.ofHours(1)));
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(planetNameIndex::rebuild);
+        assertThat(scanned.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            CompletableFuture.runAsync(() -> {
+                planetNameIndex.add(6L, "Hoth");
+                planetNameIndex.remove(1L);
+            }).get(1, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        rebuild.get(5, TimeUnit.SECONDS);
+
+        assertThat(planetNameIndex.search("hoth", 10)).containsExactly(new PlanetNameMatch(6L, "Hoth", 0));
+        assertThat(planetNameIndex.search("tato", 10)).extracting(PlanetNameMatch::id).containsExactly(4L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
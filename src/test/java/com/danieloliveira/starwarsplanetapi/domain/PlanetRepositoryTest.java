@@ -1,6 +1,7 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -12,12 +13,13 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Example;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
-import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.PLANET;
-import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.TATOOINE;
+import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.*;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest // usa um banco de dados em memória que é o H2
@@ -163,6 +165,172 @@ public class PlanetRepositoryTest {
         Assertions.assertThat(response).isEmpty();
     }
 
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void findPage_ReturnsPlanetsAfterCursorOrderedById() {
+        List<Planet> firstPage = planetRepository.findPage(PlanetFilter.of(null, null), 0L, 2);
+        List<Planet> secondPage = planetRepository.findPage(PlanetFilter.of(null, null), firstPage.getLast().getId(), 2);
+        List<Planet> filteredPage = planetRepository.findPage(PlanetFilter.of(null, "temperate"), ALDERAAN.getId(), 2);
+
+        assertThat(firstPage).containsExactly(TATOOINE, ALDERAAN);
+        assertThat(secondPage).containsExactly(YAVINIV);
+        assertThat(filteredPage).containsExactly(YAVINIV);
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void streamByFilter_ReturnsFilteredPlanetsOrderedById() {
+        try (Stream<Planet> all = planetRepository.streamByFilter(PlanetFilter.of(null, null));
+             Stream<Planet> filtered = planetRepository.streamByFilter(PlanetFilter.of(TATOOINE.getTerrain(), null))) {
+            assertThat(all).containsExactly(TATOOINE, ALDERAAN, YAVINIV);
+            assertThat(filtered).containsExactly(TATOOINE);
+        }
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void findByFilter_WithAllTags_ReturnsPlanetsHavingEveryTag() {
+        List<Planet> oneTag = planetRepository.findByFilter(PlanetFilter.of("Mountains", null));
+        List<Planet> twoTags = planetRepository.findByFilter(PlanetFilter.of(null, "temperate,tropical"));
+        List<Planet> bothDimensions = planetRepository.findByFilter(PlanetFilter.of("mountains", "temperate"));
+        List<Planet> noMatch = planetRepository.findByFilter(PlanetFilter.of("mountains", "tropical"));
+
+        assertThat(oneTag).containsExactly(ALDERAAN);
+        assertThat(twoTags).containsExactly(YAVINIV);
+        assertThat(bothDimensions).containsExactly(ALDERAAN);
+        assertThat(noMatch).isEmpty();
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void findByFilter_WithAnyTag_ReturnsPlanetsHavingSomeTag() {
+        List<Planet> sut = planetRepository.findByFilter(PlanetFilter.of("desert, jungle", null, PlanetFilter.Match.ANY));
+
+        assertThat(sut).containsExactly(TATOOINE, YAVINIV);
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void findByFilter_WithExactMatch_ComparesWholeValue() {
+        List<Planet> sut = planetRepository.findByFilter(PlanetFilter.of(null, "Temperate", PlanetFilter.Match.EXACT));
+
+        assertThat(sut).containsExactly(ALDERAAN);
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void findByFilter_LoadsPlanetsAsReadOnly() {
+        List<Planet> planets = planetRepository.findByFilter(PlanetFilter.of(null, null));
+        Session session = testEntityManager.getEntityManager().unwrap(Session.class);
+
+        assertThat(planets).isNotEmpty().allMatch(session::isReadOnly);
+        // sem a cópia para o dirty checking, a alteração não vira UPDATE no flush
+        Planet tatooine = planets.getFirst();
+        tatooine.setClimate("frozen");
+        testEntityManager.flush();
+        testEntityManager.clear();
+        assertThat(testEntityManager.find(Planet.class, TATOOINE.getId()).getClimate()).isEqualTo(TATOOINE.getClimate());
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void findProjections_ReturnsOnlyRequestedFields() {
+        List<PlanetProjection> planets = planetRepository.findProjections(PlanetFilter.of(null, "temperate"),
+                EnumSet.of(PlanetField.NAME, PlanetField.TERRAIN));
+
+        assertThat(planets).extracting(PlanetProjection::getId).containsExactly(ALDERAAN.getId(), YAVINIV.getId());
+        assertThat(planets).extracting(PlanetProjection::getFields).containsExactly(
+                Map.of("name", ALDERAAN.getName(), "terrain", ALDERAAN.getTerrain()),
+                Map.of("name", YAVINIV.getName(), "terrain", YAVINIV.getTerrain()));
+        // nenhuma entidade foi carregada no contexto de persistência
+        assertThat(testEntityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void findProjectionPage_ReturnsPlanetsAfterCursor() {
+        List<PlanetProjection> planets = planetRepository.findProjectionPage(PlanetFilter.of(null, null),
+                EnumSet.of(PlanetField.ID), TATOOINE.getId(), 1);
+
+        assertThat(planets).extracting(PlanetProjection::getFields).containsExactly(Map.of("id", ALDERAAN.getId()));
+        assertThat(planets.getFirst().getVersion()).isZero();
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void versionOf_ChangesWhenPlanetIsUpdatedOrRemoved() {
+        PlanetListVersion initial = planetRepository.versionOf(PlanetFilter.of(null, "temperate"));
+        assertThat(initial).isEqualTo(new PlanetListVersion(2, 3, 5, 0));
+
+        Planet alderaan = testEntityManager.find(Planet.class, ALDERAAN.getId());
+        alderaan.setTerrain("grasslands");
+        testEntityManager.flush();
+        PlanetListVersion updated = planetRepository.versionOf(PlanetFilter.of(null, "temperate"));
+        assertThat(alderaan.getVersion()).isEqualTo(1L);
+        assertThat(updated).isEqualTo(new PlanetListVersion(2, 3, 5, 1));
+
+        planetRepository.deleteById(YAVINIV.getId());
+        testEntityManager.flush();
+        assertThat(planetRepository.versionOf(PlanetFilter.of(null, "temperate"))).isEqualTo(new PlanetListVersion(1, 2, 2, 1));
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void versionOfPage_MatchesLoadedPage() {
+        List<Planet> planets = planetRepository.findPage(PlanetFilter.of(null, null), 0L, 3);
+        PlanetPage<Planet> page = new PlanetPage<>(planets.subList(0, 2), planets.get(1).getId());
+
+        assertThat(planetRepository.versionOfPage(PlanetFilter.of(null, null), 0L, 2)).isEqualTo(PlanetListVersion.of(page));
+        assertThat(planetRepository.versionOfPage(PlanetFilter.of(null, null), 2L, 2)).isEqualTo(new PlanetListVersion(1, 3, 3, 0));
+    }
+
+    // o getReference devolve um proxy do Hibernate, que precisa ser igual ao planeta carregado nos dois sentidos
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void getReference_IsEqualToLoadedPlanet() {
+        Planet proxy = testEntityManager.getEntityManager().getReference(Planet.class, TATOOINE.getId());
+
+        assertThat(proxy.getClass()).isNotEqualTo(Planet.class);
+        assertThat(proxy).isEqualTo(TATOOINE);
+        assertThat(TATOOINE).isEqualTo(proxy);
+        assertThat(proxy.hashCode()).isEqualTo(TATOOINE.hashCode());
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void removePlanet_RemovesItsTags() {
+        planetRepository.deleteById(ALDERAAN.getId());
+        testEntityManager.flush();
+
+        Long tags = testEntityManager.getEntityManager()
+                .createQuery("select count(t) from PlanetTag t where t.planetId = :id", Long.class)
+                .setParameter("id", ALDERAAN.getId())
+                .getSingleResult();
+        assertThat(tags).isZero();
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void removeById_DeletesPlanetAndTagsInOneStatement() {
+        assertThat(planetRepository.removeById(ALDERAAN.getId())).isOne();
+        assertThat(planetRepository.removeById(99L)).isZero();
+
+        assertThat(testEntityManager.find(Planet.class, ALDERAAN.getId())).isNull();
+        Long tags = testEntityManager.getEntityManager()
+                .createQuery("select count(t) from PlanetTag t where t.planetId = :id", Long.class)
+                .setParameter("id", ALDERAAN.getId())
+                .getSingleResult();
+        assertThat(tags).isZero();
+    }
+
+    @Test
+    @Sql(scripts = "/import_planets.sql")
+    public void removeByIdIn_DeletesOnlyExistingPlanets() {
+        assertThat(planetRepository.removeByIdIn(List.of(TATOOINE.getId(), YAVINIV.getId(), 99L))).isEqualTo(2);
+
+        assertThat(planetRepository.findAll()).containsExactly(ALDERAAN);
+    }
+
     @Test
     public void removePlanet_WithExistingId_RemovesPlanetFromDatabase() {
         Planet planet = testEntityManager.persistFlushFind(PLANET);
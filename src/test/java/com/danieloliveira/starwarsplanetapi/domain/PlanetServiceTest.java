@@ -1,46 +1,93 @@
 package com.danieloliveira.starwarsplanetapi.domain;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Example;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.INVALID_PLANET;
-import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.PLANET;
+import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class PlanetServiceTest {
 
-    @InjectMocks // cria uma instância real do PlanetService e todas as dependências dele são injetadas com mocks
     private PlanetService planetService;
 
+    private MeterRegistry meterRegistry;
+
+    private List<Object> events;
+
     @Mock
     private PlanetRepository planetRepository;
 
+    @Mock
+    private PlanetTagRepository planetTagRepository;
+
+    @Mock
+    private PlanetNameIndex planetNameIndex;
+
+    @Mock
+    private PlanetChangeLog planetChangeLog;
+
+    @Mock
+    private PlanetSnapshot planetSnapshot;
+
+    @Mock
+    private PlanetFacetCounts planetFacetCounts;
+
+    // cria uma instância real do PlanetService com o repositório mockado e um cache real novo para cada teste
+    @BeforeEach
+    public void setUp() {
+        PlanetCache planetCache = new PlanetCache(new PlanetCacheProperties(100, Duration.ofMinutes(1), Duration.ofSeconds(1)));
+        meterRegistry = new SimpleMeterRegistry();
+        events = new ArrayList<>();
+        planetService = new PlanetService(planetRepository, planetTagRepository, planetCache, planetNameIndex, planetChangeLog, planetSnapshot,
+                planetFacetCounts, events::add, meterRegistry);
+    }
+
     @Test // operaçãoQueEstaSendoTestada_parametrosQueElaRecebe_retornoEsperado
     public void createPlanet_ComDadosValidos_ReturnaUmPlaneta() {
         // ARRANGE
-        // quando o metodo create no service é chamado ele chama o save do repositório, então nessa linha é específica que quando o metodo save for chamado ele deve retorna o PLANET
-        when(planetRepository.save(PLANET)).thenReturn(PLANET);
+        // quando o metodo create no service é chamado ele chama o save do repositório, então nessa linha é específica que quando o metodo save for chamado ele deve retorna o PLANET já com o id gerado pelo banco
+        Planet saved = new Planet(1L, PLANET.getName(), PLANET.getClimate(), PLANET.getTerrain());
+        when(planetRepository.save(PLANET)).thenReturn(saved);
 
         // ACT
         Planet sut = planetService.create(PLANET);
 
         // ASSERT
-        Assertions.assertThat(sut).isEqualTo(PLANET);
+        Assertions.assertThat(sut).isEqualTo(saved);
+        verify(planetTagRepository).saveAll(any());
+        verify(planetNameIndex).add(saved);
+        verify(planetChangeLog).created(List.of(saved));
+        verify(planetFacetCounts).added(List.of(saved));
+        Assertions.assertThat(events).containsExactly(new PlanetsChangedEvent(List.of(1L)));
     }
 
     @Test
@@ -89,6 +136,114 @@ public class PlanetServiceTest {
         Assertions.assertThat(sut).isEmpty();
     }
 
+    @Test
+    public void getPlanetById_ChamadoDuasVezes_ConsultaORepositorioUmaVez() {
+        when(planetRepository.findById(TATOOINE.getId())).thenReturn(Optional.of(TATOOINE));
+
+        planetService.get(TATOOINE.getId());
+        Optional<Planet> sut = planetService.get(TATOOINE.getId());
+
+        Assertions.assertThat(sut).contains(TATOOINE);
+        verify(planetRepository, times(1)).findById(TATOOINE.getId());
+    }
+
+    @Test
+    public void getPlanetByName_AposBuscarPorNome_UsaAMesmaEntradaDoCachePorId() {
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.of(TATOOINE));
+
+        planetService.getByName(TATOOINE.getName());
+        Optional<Planet> byName = planetService.getByName(TATOOINE.getName());
+        Optional<Planet> byId = planetService.get(TATOOINE.getId());
+
+        Assertions.assertThat(byName).contains(TATOOINE);
+        Assertions.assertThat(byId).contains(TATOOINE);
+        verify(planetRepository, times(1)).findByName(TATOOINE.getName());
+        verify(planetRepository, times(0)).findById(TATOOINE.getId());
+    }
+
+    @Test
+    public void getPlanetByName_PorNomeInexistente_GuardaAConsultaNegativa() {
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.empty());
+
+        planetService.getByName(TATOOINE.getName());
+        Optional<Planet> sut = planetService.getByName(TATOOINE.getName());
+
+        Assertions.assertThat(sut).isEmpty();
+        verify(planetRepository, times(1)).findByName(TATOOINE.getName());
+    }
+
+    @Test
+    public void createPlanet_AposConsultaNegativa_InvalidaOCache() {
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.empty());
+        when(planetRepository.save(TATOOINE)).thenReturn(TATOOINE);
+
+        planetService.getByName(TATOOINE.getName());
+        planetService.create(TATOOINE);
+        Optional<Planet> sut = planetService.getByName(TATOOINE.getName());
+
+        Assertions.assertThat(sut).contains(TATOOINE);
+    }
+
+    @Test
+    public void createPlanet_AposConsultaNegativaComOutraCaixa_InvalidaOCache() {
+        String lowerCase = TATOOINE.getName().toLowerCase(Locale.ROOT);
+        when(planetRepository.findByName(lowerCase)).thenReturn(Optional.empty());
+        when(planetRepository.save(TATOOINE)).thenReturn(TATOOINE);
+
+        planetService.getByName(lowerCase);
+        planetService.create(TATOOINE);
+        Optional<Planet> sut = planetService.getByName(lowerCase);
+
+        Assertions.assertThat(sut).contains(TATOOINE);
+    }
+
+    @Test
+    public void removePlanet_AposConsulta_InvalidaIdENome() {
+        when(planetRepository.findById(TATOOINE.getId())).thenReturn(Optional.of(TATOOINE), Optional.empty());
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.of(TATOOINE), Optional.empty());
+        when(planetRepository.removeById(TATOOINE.getId())).thenReturn(1);
+
+        planetService.get(TATOOINE.getId());
+        planetService.getByName(TATOOINE.getName());
+        planetService.remove(TATOOINE.getId());
+
+        Assertions.assertThat(planetService.get(TATOOINE.getId())).isEmpty();
+        Assertions.assertThat(planetService.getByName(TATOOINE.getName())).isEmpty();
+    }
+
+    @Test
+    public void getPlanetById_ComRemocaoDuranteAConsulta_NaoGuardaOPlanetaApagado() {
+        // o delete commita e limpa o cache enquanto a consulta ainda está rodando
+        when(planetRepository.findById(TATOOINE.getId())).thenAnswer(invocation -> {
+            planetService.remove(TATOOINE.getId());
+            return Optional.of(TATOOINE);
+        }).thenReturn(Optional.empty());
+        when(planetRepository.removeById(TATOOINE.getId())).thenReturn(1);
+
+        planetService.get(TATOOINE.getId());
+        Optional<Planet> sut = planetService.get(TATOOINE.getId());
+
+        Assertions.assertThat(sut).isEmpty();
+        verify(planetRepository, times(2)).findById(TATOOINE.getId());
+    }
+
+    @Test
+    public void createPlanet_SemCommit_NaoPublicaOPlanetaNoCacheNemNoIndice() {
+        when(planetRepository.save(TATOOINE)).thenReturn(TATOOINE);
+        when(planetRepository.findById(TATOOINE.getId())).thenReturn(Optional.empty());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            planetService.create(TATOOINE);
+        } finally {
+            // a transação termina sem commit, então as sincronizações registradas no create nunca rodam
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        Assertions.assertThat(planetService.get(TATOOINE.getId())).isEmpty();
+        verify(planetNameIndex, never()).add(any());
+    }
+
     @Test
     public void listarPlanetas_ReturnaTodosOsPlanetas() {
         List<Planet> planets = new ArrayList<>() {
@@ -97,11 +252,11 @@ public class PlanetServiceTest {
             }
         };
 
-        Example<Planet> query = QueryBuilder.makeQuery(new Planet(PLANET.getClimate(), PLANET.getTerrain()));
+        PlanetFilter filter = PlanetFilter.of(PLANET.getTerrain(), PLANET.getClimate());
 
-        when(planetRepository.findAll(query)).thenReturn(planets);
+        when(planetRepository.findByFilter(filter)).thenReturn(planets);
 
-        List<Planet> sut = planetService.list(PLANET.getTerrain(), PLANET.getClimate());
+        List<Planet> sut = planetService.list(filter);
 
         Assertions.assertThat(sut).isNotEmpty();
         Assertions.assertThat(sut).hasSize(planets.size());
@@ -111,22 +266,130 @@ public class PlanetServiceTest {
 
     @Test
     public void listarPlanetas_ReturnaNenhumPlaneta() {
-        when(planetRepository.findAll(any())).thenReturn(Collections.emptyList());
+        when(planetRepository.findByFilter(any())).thenReturn(Collections.emptyList());
 
-        List<Planet> sut = planetService.list(PLANET.getTerrain(), PLANET.getClimate());
+        List<Planet> sut = planetService.list(PlanetFilter.of(PLANET.getTerrain(), PLANET.getClimate()));
 
         Assertions.assertThat(sut).isEmpty();
     }
 
+    @Test
+    public void pagePlanets_ComMaisPlanetasQueOLimite_RetornaProximoCursor() {
+        // o service pede um planeta a mais do que o limite para descobrir se existe uma próxima página
+        when(planetRepository.findPage(PlanetFilter.of(null, null), 0L, 3)).thenReturn(PLANETS);
+
+        PlanetPage<Planet> sut = planetService.page(PlanetFilter.of(null, null), 0L, 2);
+
+        Assertions.assertThat(sut.planets()).containsExactly(TATOOINE, ALDERAAN);
+        Assertions.assertThat(sut.hasNext()).isTrue();
+        Assertions.assertThat(sut.nextAfter()).isEqualTo(ALDERAAN.getId());
+    }
+
+    @Test
+    public void pagePlanets_NaUltimaPagina_NaoRetornaProximoCursor() {
+        when(planetRepository.findPage(PlanetFilter.of(null, null), ALDERAAN.getId(), 3)).thenReturn(List.of(YAVINIV));
+
+        PlanetPage<Planet> sut = planetService.page(PlanetFilter.of(null, null), ALDERAAN.getId(), 2);
+
+        Assertions.assertThat(sut.planets()).containsExactly(YAVINIV);
+        Assertions.assertThat(sut.hasNext()).isFalse();
+    }
+
+    @Test
+    public void listPlanets_RegistraOTamanhoDoResultado() {
+        when(planetRepository.findByFilter(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+        when(planetRepository.findPage(PlanetFilter.of(null, null), 0L, 3)).thenReturn(PLANETS);
+
+        planetService.list(PlanetFilter.of(null, null));
+        planetService.page(PlanetFilter.of(null, null), 0L, 2);
+
+        Assertions.assertThat(meterRegistry.get("planets.list.size").tag("operation", "list").summary().totalAmount()).isEqualTo(3);
+        // o planeta extra usado só para descobrir a próxima página não conta
+        Assertions.assertThat(meterRegistry.get("planets.list.size").tag("operation", "page").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void streamPlanets_EntregaTodosOsPlanetasParaOConsumer() {
+        when(planetRepository.streamByFilter(PlanetFilter.of(null, null))).thenReturn(PLANETS.stream());
+
+        List<Planet> sut = new ArrayList<>();
+        planetService.stream(PlanetFilter.of(null, null), sut::add);
+
+        Assertions.assertThat(sut).containsExactlyElementsOf(PLANETS);
+    }
+
     @Test
     public void removePlanet_PorIdExistente_NaoLancaNenhumaExcessao() {
+        when(planetRepository.removeById(1L)).thenReturn(1);
         Assertions.assertThatCode(() -> planetService.remove(1L)).doesNotThrowAnyException();
+        // as contagens leem as tags, que o DELETE apaga em cascata, então precisam rodar antes dele
+        InOrder inOrder = inOrder(planetFacetCounts, planetRepository);
+        inOrder.verify(planetFacetCounts).removed(List.of(1L));
+        inOrder.verify(planetRepository).removeById(1L);
+        verify(planetNameIndex).remove(1L);
+        verify(planetChangeLog).deleted(1L);
+        Assertions.assertThat(events).containsExactly(new PlanetsChangedEvent(List.of(1L)));
     }
 
     @Test
     public void removePlanet_PorIdInexistente_LancaException() {
-        doThrow(new RuntimeException()).when(planetRepository).deleteById(99L);
+        when(planetRepository.removeById(99L)).thenReturn(0);
+        Assertions.assertThatThrownBy(() -> planetService.remove(99L)).isInstanceOf(EmptyResultDataAccessException.class);
+        verify(planetChangeLog, never()).deleted(any());
+    }
+
+    @Test
+    public void removePlanet_ComErroNoBanco_RepassaAExcessao() {
+        doThrow(new RuntimeException()).when(planetRepository).removeById(99L);
         Assertions.assertThatThrownBy(() -> planetService.remove(99L)).isInstanceOf(RuntimeException.class);
+        // o planeta pode continuar no banco, então continua no índice de nomes
+        verify(planetNameIndex, never()).remove(any());
+        Assertions.assertThat(events).isEmpty();
+    }
+
+    @Test
+    public void removeAllPlanets_RetornaQuantosForamApagados() {
+        when(planetRepository.removeByIdIn(Set.of(1L, 2L, 99L))).thenReturn(2);
+
+        PlanetDeleteResult sut = planetService.removeAll(Set.of(1L, 2L, 99L));
+
+        Assertions.assertThat(sut).isEqualTo(new PlanetDeleteResult(3, 2));
+        verify(planetNameIndex).remove(99L);
+        verify(planetChangeLog).deletedIn(Set.of(1L, 2L, 99L));
+        verify(planetFacetCounts).removed(Set.of(1L, 2L, 99L));
+    }
+
+    @Test
+    public void facets_LeSomenteAsContagens() {
+        PlanetFacets facets = new PlanetFacets(Map.of("arid", 1L), Map.of("desert", 1L));
+        when(planetFacetCounts.facets("desert", null)).thenReturn(facets);
+
+        Assertions.assertThat(planetService.facets("desert", null)).isEqualTo(facets);
+        verifyNoInteractions(planetRepository);
+    }
+
+    @Test
+    public void searchPlanets_UsaSomenteOIndiceDeNomes() {
+        List<PlanetNameMatch> matches = List.of(new PlanetNameMatch(1L, "Tatooine", 0));
+        when(planetNameIndex.search("tato", 10)).thenReturn(matches);
+
+        Assertions.assertThat(planetService.search("tato", 10)).isEqualTo(matches);
+        verifyNoInteractions(planetRepository);
+    }
+
+    @Test
+    public void getAndListPlanets_ComSnapshotLigado_NaoConsultamORepositorio() {
+        PlanetFilter filter = PlanetFilter.of(TATOOINE.getTerrain(), null);
+        when(planetSnapshot.isEnabled()).thenReturn(true);
+        when(planetSnapshot.get(1L)).thenReturn(Optional.of(PLANET));
+        when(planetSnapshot.getByName(PLANET.getName())).thenReturn(Optional.of(PLANET));
+        when(planetSnapshot.list(filter)).thenReturn(List.of(TATOOINE));
+
+        Assertions.assertThat(planetService.get(1L)).contains(PLANET);
+        Assertions.assertThat(planetService.getByName(PLANET.getName())).contains(PLANET);
+        Assertions.assertThat(planetService.list(filter)).containsExactly(TATOOINE);
+        Assertions.assertThat(meterRegistry.get("planets.list.size").tag("operation", "list").summary().totalAmount()).isEqualTo(1);
+        verifyNoInteractions(planetRepository);
     }
 
 }
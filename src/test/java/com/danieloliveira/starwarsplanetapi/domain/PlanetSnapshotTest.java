@@ -0,0 +1,179 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanetSnapshotTest {
+    private JdbcTemplate jdbcTemplate;
+    private PlanetSnapshot planetSnapshot;
+
+    // a tabela só precisa das colunas que o catálogo lê
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:snapshot;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS planets (id BIGINT PRIMARY KEY, name VARCHAR(255), climate VARCHAR(255),"
+                + " terrain VARCHAR(255), version BIGINT, updated_at TIMESTAMP(6) WITH TIME ZONE)");
+        jdbcTemplate.execute("DELETE FROM planets");
+        insert(1, "Tatooine", "arid", "desert");
+        insert(2, "Alderaan", "temperate", "grasslands, mountains");
+        insert(3, "Yavin IV", "temperate, tropical", "jungle, rainforests");
+        insert(4, "Hoth", "frozen", "tundra, ice caves, mountain ranges");
+        planetSnapshot = new PlanetSnapshot(jdbcTemplate, new PlanetSnapshotProperties(true, Duration.ofHours(1)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        planetSnapshot.destroy();
+    }
+
+    @Test
+    public void get_PorIdENome_RetornaOPlanetaComVersao() {
+        Planet planet = planetSnapshot.get(2L).orElseThrow();
+
+        assertThat(planet).isEqualTo(new Planet(2L, "Alderaan", "temperate", "grasslands, mountains"));
+        assertThat(planet.getVersion()).isEqualTo(0L);
+        assertThat(planet.getUpdatedAt()).isNotNull();
+        assertThat(planetSnapshot.getByName("Hoth")).map(Planet::getId).contains(4L);
+        assertThat(planetSnapshot.get(99L)).isEmpty();
+        assertThat(planetSnapshot.getByName("Naboo")).isEmpty();
+    }
+
+    // a collation da coluna name no MySQL não diferencia maiúsculas, e o catálogo em memória responde igual
+    @Test
+    public void getByName_ComOutraCaixa_RetornaOPlaneta() {
+        assertThat(planetSnapshot.getByName("tatooine")).map(Planet::getId).contains(1L);
+        assertThat(planetSnapshot.getByName("YAVIN IV")).map(Planet::getName).contains("Yavin IV");
+    }
+
+    @Test
+    public void list_ComFiltro_SegueAsMesmasRegrasDoQueryBuilder() {
+        assertThat(ids(PlanetFilter.of(null, null))).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(ids(PlanetFilter.of(null, "Temperate"))).containsExactly(2L, 3L);
+        assertThat(ids(PlanetFilter.of("mountains, grasslands", "temperate"))).containsExactly(2L);
+        assertThat(ids(PlanetFilter.of("desert, jungle", null, PlanetFilter.Match.ANY))).containsExactly(1L, 3L);
+        assertThat(ids(PlanetFilter.of(null, "temperate", PlanetFilter.Match.EXACT))).containsExactly(2L);
+        assertThat(ids(PlanetFilter.of("ocean", null))).isEmpty();
+    }
+
+    @Test
+    public void onPlanetsChanged_CorrigeAsLinhasDosIdsEscritos() {
+        planetSnapshot.load();
+        insert(5, "Naboo", "temperate", "grassy hills, swamps");
+        jdbcTemplate.update("UPDATE planets SET climate = 'hot', version = version + 1 WHERE id = 1");
+        jdbcTemplate.update("DELETE FROM planets WHERE id = 2");
+
+        planetSnapshot.onPlanetsChanged(new PlanetsChangedEvent(List.of(1L, 2L, 5L)));
+
+        assertThat(planetSnapshot.get(1L)).map(Planet::getClimate).contains("hot");
+        assertThat(planetSnapshot.get(1L)).map(Planet::getVersion).contains(1L);
+        assertThat(planetSnapshot.get(2L)).isEmpty();
+        assertThat(planetSnapshot.getByName("Alderaan")).isEmpty();
+        assertThat(planetSnapshot.getByName("Naboo")).map(Planet::getId).contains(5L);
+        assertThat(ids(PlanetFilter.of(null, "temperate"))).containsExactly(3L, 5L);
+        assertThat(planetSnapshot.size()).isEqualTo(4);
+    }
+
+    // uma transação que commitou depois de outra com id maior
+    @Test
+    public void onPlanetsChanged_ComIdForaDeOrdem_ListaContinuaEmOrdemDeId() {
+        jdbcTemplate.update("DELETE FROM planets WHERE id = 3");
+        planetSnapshot.load();
+        insert(3, "Yavin IV", "temperate, tropical", "jungle, rainforests");
+
+        planetSnapshot.onPlanetsChanged(new PlanetsChangedEvent(List.of(3L)));
+
+        assertThat(ids(PlanetFilter.of(null, null))).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(planetSnapshot.get(3L)).map(Planet::getName).contains("Yavin IV");
+    }
+
+    @Test
+    public void onPlanetsChanged_ComMuitasEscritas_CompactaSemPerderPlanetas() {
+        planetSnapshot.load();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 10; id < 5010; id++) {
+            insert(id, "planet-" + id, id % 2 == 0 ? "arid" : "frozen", "desert");
+            ids.add(id);
+        }
+        planetSnapshot.onPlanetsChanged(new PlanetsChangedEvent(ids));
+        jdbcTemplate.update("DELETE FROM planets WHERE id >= 10 AND id < 4010");
+        planetSnapshot.onPlanetsChanged(new PlanetsChangedEvent(LongStream.range(10, 4010).boxed().toList()));
+
+        assertThat(planetSnapshot.size()).isEqualTo(1004);
+        assertThat(planetSnapshot.getByName("planet-4010")).map(Planet::getId).contains(4010L);
+        assertThat(planetSnapshot.getByName("planet-10")).isEmpty();
+        assertThat(ids(PlanetFilter.of("desert", "frozen"))).hasSize(500).first().isEqualTo(4011L);
+        assertThat(planetSnapshot.memoryBytes()).isPositive();
+    }
+
+    @Test
+    public void rebuild_TrazAsEscritasDeOutrasInstancias() {
+        planetSnapshot.load();
+        insert(5, "Naboo", "temperate", "grassy hills, swamps");
+
+        assertThat(planetSnapshot.get(5L)).isEmpty();
+        planetSnapshot.rebuild();
+        assertThat(planetSnapshot.get(5L)).map(Planet::getName).contains("Naboo");
+    }
+
+    @Test
+    public void onPlanetsChanged_DuranteORebuild_NaoEsperaALeituraDaTabela() throws Exception {
+        CountDownLatch scanned = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a leitura da tabela inteira termina e fica parada, como uma releitura demorada
+        JdbcTemplate slowScan = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                scanned.countDown();
+                await(release);
+            }
+        };
+        planetSnapshot.destroy();
+        planetSnapshot = new PlanetSnapshot(slowScan, new PlanetSnapshotProperties(true, Duration.ofHours(1)));
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(planetSnapshot::rebuild);
+        assertThat(scanned.await(5, TimeUnit.SECONDS)).isTrue();
+
+        insert(5, "Naboo", "temperate", "grassy hills, swamps");
+        try {
+            CompletableFuture.runAsync(() -> planetSnapshot.onPlanetsChanged(new PlanetsChangedEvent(List.of(5L))))
+                    .get(1, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        rebuild.get(5, TimeUnit.SECONDS);
+
+        assertThat(planetSnapshot.get(5L)).map(Planet::getName).contains("Naboo");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Long> ids(PlanetFilter filter) {
+        return planetSnapshot.list(filter).stream().map(Planet::getId).toList();
+    }
+
+    private void insert(long id, String name, String climate, String terrain) {
+        jdbcTemplate.update("INSERT INTO planets VALUES (?, ?, ?, ?, 0, CURRENT_TIMESTAMP)", id, name, climate, terrain);
+    }
+}
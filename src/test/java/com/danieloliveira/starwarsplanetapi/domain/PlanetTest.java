@@ -0,0 +1,90 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanetTest {
+    private static final int PLANETS = 100_000;
+
+    @Test
+    public void equals_WithSameValues_ReturnsTrueAndSameHashCode() {
+        Planet copy = new Planet(1L, "Tatooine", "arid", "desert");
+
+        assertThat(copy).isEqualTo(TATOOINE);
+        assertThat(TATOOINE).isEqualTo(copy);
+        assertThat(copy.hashCode()).isEqualTo(TATOOINE.hashCode());
+    }
+
+    @Test
+    public void equals_WithDifferentValues_ReturnsFalse() {
+        assertThat(TATOOINE).isNotEqualTo(new Planet(2L, "Tatooine", "arid", "desert"));
+        assertThat(TATOOINE).isNotEqualTo(new Planet(1L, "Alderaan", "arid", "desert"));
+        assertThat(TATOOINE).isNotEqualTo(new Planet(1L, "Tatooine", "temperate", "desert"));
+        assertThat(TATOOINE).isNotEqualTo(new Planet(1L, "Tatooine", "arid", "jungle"));
+        assertThat(TATOOINE).isNotEqualTo(null);
+        assertThat(TATOOINE).isNotEqualTo("Tatooine");
+    }
+
+    // as colunas normalizadas são derivadas, então diferenças só de caixa ficam a cargo de climate e terrain
+    @Test
+    public void equals_WithDifferentCase_ReturnsFalse() {
+        assertThat(TATOOINE).isNotEqualTo(new Planet(1L, "Tatooine", "Arid", "desert"));
+    }
+
+    // o Hibernate cria subclasses de Planet como proxy, então o equals não pode exigir a mesma classe
+    @Test
+    public void equals_WithSubclass_ComparesValues() {
+        Planet subclass = new Planet(1L, "Tatooine", "arid", "desert") {
+        };
+
+        assertThat(subclass).isEqualTo(TATOOINE);
+        assertThat(TATOOINE).isEqualTo(subclass);
+    }
+
+    @Test
+    public void hashCode_AfterIdIsGenerated_StaysTheSame() {
+        Planet planet = new Planet("Hoth", "frozen", "tundra");
+        Set<Planet> planets = new HashSet<>(List.of(planet));
+        int before = planet.hashCode();
+
+        planet.setId(4L);
+
+        assertThat(planet.hashCode()).isEqualTo(before);
+        assertThat(planets).contains(planet);
+    }
+
+    @Test
+    public void hashSet_WithDuplicatedPlanets_KeepsOnePerPlanet() {
+        List<Planet> planets = new ArrayList<>(PLANETS * 2);
+        for (long i = 0; i < PLANETS; i++) {
+            planets.add(new Planet(i, "planet-" + i, "arid", "desert"));
+            planets.add(new Planet(i, "planet-" + i, "arid", "desert"));
+        }
+
+        Set<Planet> unique = new HashSet<>(planets);
+
+        assertThat(unique).hasSize(PLANETS);
+        assertThat(unique).contains(new Planet(42L, "planet-42", "arid", "desert"));
+    }
+
+    @Test
+    public void hashMap_WithPlanetKeys_FindsEqualCopies() {
+        Map<Planet, Long> ids = new HashMap<>();
+        for (long i = 0; i < PLANETS; i++) {
+            ids.put(new Planet(i, "planet-" + i, "arid", "desert"), i);
+        }
+
+        for (long i = 0; i < PLANETS; i++) {
+            assertThat(ids.get(new Planet(i, "planet-" + i, "arid", "desert"))).isEqualTo(i);
+        }
+    }
+}
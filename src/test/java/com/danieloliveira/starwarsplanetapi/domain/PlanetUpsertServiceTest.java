@@ -0,0 +1,127 @@
+package com.danieloliveira.starwarsplanetapi.domain;
+
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+// o upsert abre a própria transação, então o teste não pode rodar dentro da transação do DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = {"/remove_planets.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetUpsertServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    private PlanetUpsertService planetUpsertService;
+
+    private PlanetCache planetCache;
+
+    private PlanetNameIndex planetNameIndex;
+
+    private PlanetChangeLog planetChangeLog;
+
+    private List<Object> events;
+
+    // o H2 só entende o ON DUPLICATE KEY UPDATE no modo de compatibilidade com o MySQL, que vale para o banco inteiro
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate.execute("SET MODE MySQL");
+        planetCache = new PlanetCache(new PlanetCacheProperties(100, Duration.ofMinutes(1), Duration.ofSeconds(1)));
+        planetNameIndex = new PlanetNameIndex(jdbcTemplate, new PlanetNameIndexProperties(Duration.ofHours(1)));
+        planetChangeLog = new PlanetChangeLog(jdbcTemplate);
+        events = new ArrayList<>();
+        planetUpsertService = new PlanetUpsertService(jdbcTemplate, new TransactionTemplate(transactionManager),
+                Validation.buildDefaultValidatorFactory().getValidator(), planetCache, planetNameIndex, planetChangeLog,
+                new PlanetFacetCounts(jdbcTemplate, new TransactionTemplate(transactionManager)), events::add);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("SET MODE REGULAR");
+    }
+
+    @Test
+    public void upsert_ComNomeNovo_CriaPlanetaETags() {
+        PlanetUpsertResult sut = planetUpsertService.upsert(new Planet("Hoth", "frozen", "tundra, ice caves"));
+
+        assertThat(sut.status()).isEqualTo(PlanetUpsertResult.Status.CREATED);
+        assertThat(sut.planet().getId()).isNotNull();
+        assertThat(sut.planet().getVersion()).isZero();
+        assertThat(planetRepository.findByFilter(PlanetFilter.of("ice caves", "frozen"))).extracting(Planet::getName).containsExactly("Hoth");
+        assertThat(planetNameIndex.search("hot", 10)).extracting(PlanetNameMatch::id).containsExactly(sut.planet().getId());
+        assertThat(planetCache.getByName("Hoth", name -> Optional.empty())).contains(sut.planet());
+        assertThat(events).containsExactly(new PlanetsChangedEvent(List.of(sut.planet().getId())));
+    }
+
+    @Test
+    public void upsert_ComNomeExistente_AtualizaClimaTerrenoETags() {
+        Planet created = planetUpsertService.upsert(new Planet("Hoth", "frozen", "tundra")).planet();
+
+        PlanetUpsertResult sut = planetUpsertService.upsert(new Planet("Hoth", "temperate", "grasslands"));
+
+        assertThat(sut.status()).isEqualTo(PlanetUpsertResult.Status.UPDATED);
+        assertThat(sut.planet().getId()).isEqualTo(created.getId());
+        assertThat(sut.planet().getVersion()).isEqualTo(1L);
+        assertThat(sut.planet().getClimate()).isEqualTo("temperate");
+        assertThat(planetRepository.findByFilter(PlanetFilter.of("tundra", null))).isEmpty();
+        assertThat(planetRepository.findByFilter(PlanetFilter.of("grasslands", "temperate"))).extracting(Planet::getId)
+                .containsExactly(created.getId());
+        assertThat(planetRepository.count()).isEqualTo(1);
+        assertThat(planetChangeLog.after(0, 10)).extracting(PlanetChange::getType, PlanetChange::getClimate).containsExactly(
+                tuple(PlanetChange.Type.CREATED, "frozen"), tuple(PlanetChange.Type.UPDATED, "temperate"));
+        assertThat(facets().climate()).containsExactly(entry("temperate", 1L));
+        assertThat(facets().terrain()).containsExactly(entry("grasslands", 1L));
+        assertThat(events).hasSize(2);
+    }
+
+    @Test
+    public void upsert_ComOsMesmosValores_NaoMudaVersaoNemPublicaEvento() {
+        Planet created = planetUpsertService.upsert(new Planet("Hoth", "frozen", "tundra")).planet();
+
+        PlanetUpsertResult sut = planetUpsertService.upsert(new Planet("Hoth", "frozen", "tundra"));
+
+        assertThat(sut.status()).isEqualTo(PlanetUpsertResult.Status.UNCHANGED);
+        assertThat(sut.planet().getVersion()).isEqualTo(created.getVersion());
+        assertThat(sut.planet().getUpdatedAt()).isEqualTo(created.getUpdatedAt());
+        assertThat(planetChangeLog.after(0, 10)).hasSize(1);
+        assertThat(events).hasSize(1);
+    }
+
+    @Test
+    public void upsert_ComPlanetaInvalido_LancaExcecaoSemGravar() {
+        assertThatThrownBy(() -> planetUpsertService.upsert(new Planet("Hoth", "", "tundra")))
+                .isInstanceOf(ConstraintViolationException.class);
+        assertThat(planetRepository.count()).isZero();
+    }
+
+    private PlanetFacets facets() {
+        return new PlanetFacetCounts(jdbcTemplate, new TransactionTemplate(transactionManager)).facets(null, null);
+    }
+}
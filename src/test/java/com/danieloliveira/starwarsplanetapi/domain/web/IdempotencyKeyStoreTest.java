@@ -0,0 +1,75 @@
+package com.danieloliveira.starwarsplanetapi.domain.web;
+
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyKeyInProgressException;
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyKeyReusedException;
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyKeyStore;
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyKeyStoreTest {
+
+    private final IdempotencyKeyStore store = new IdempotencyKeyStore(
+            new IdempotencyProperties(100, Duration.ofMinutes(1), Duration.ofMillis(100)));
+
+    @Test
+    public void execute_MesmaChaveDeOutroCliente_RodaDeNovo() {
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<Integer> first = store.execute("10.0.0.1", "/planets", "retry", List.of("Hoth"), () -> ResponseEntity.ok(runs.incrementAndGet()));
+        ResponseEntity<Integer> other = store.execute("10.0.0.2", "/planets", "retry", List.of("Hoth"), () -> ResponseEntity.ok(runs.incrementAndGet()));
+        ResponseEntity<Integer> replayed = store.execute("10.0.0.1", "/planets", "retry", List.of("Hoth"), () -> ResponseEntity.ok(runs.incrementAndGet()));
+
+        assertThat(first.getBody()).isEqualTo(1);
+        assertThat(other.getBody()).isEqualTo(2);
+        assertThat(replayed.getBody()).isEqualTo(1);
+        assertThat(replayed.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+    }
+
+    @Test
+    public void execute_MesmaChaveComOutroCorpo_LancaException() {
+        store.execute("10.0.0.1", "/planets", "retry", List.of("Hoth"), () -> ResponseEntity.ok(1));
+
+        assertThatThrownBy(() -> store.execute("10.0.0.1", "/planets", "retry", List.of("Naboo"), () -> ResponseEntity.ok(2)))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    public void execute_ComOriginalParado_DesisteDepoisDoWaitTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<Integer>> original = CompletableFuture.supplyAsync(() ->
+                store.execute("10.0.0.1", "/planets", "slow", List.of("Hoth"), () -> {
+                    started.countDown();
+                    await(release);
+                    return ResponseEntity.ok(1);
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> store.execute("10.0.0.1", "/planets", "slow", List.of("Hoth"), () -> ResponseEntity.ok(2)))
+                    .isInstanceOf(IdempotencyKeyInProgressException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(original.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
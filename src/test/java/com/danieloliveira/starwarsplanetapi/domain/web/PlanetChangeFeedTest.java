@@ -0,0 +1,144 @@
+package com.danieloliveira.starwarsplanetapi.domain.web;
+
+import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    sobe a aplicação inteira e lê GET /planets/changes como um cliente de verdade, linha a linha
+    as escritas passam pela API, então o teste cobre o log gravado na transação e o aviso depois do commit
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "planets.changes.poll-interval=100ms"})
+@Sql(scripts = {"/remove_planets.sql"}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetChangeFeedTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlanetService planetService;
+
+    @Test
+    public void changes_RecebeCriacaoERemocaoEContinuaPeloLastEventId() throws Exception {
+        long id = create("Hoth", "frozen", "tundra");
+        long before = planetService.latestChange() - 1;
+        client.send(HttpRequest.newBuilder(uri("/planets/" + id)).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+
+        List<String> all = events(HttpRequest.newBuilder(uri("/planets/changes?after=" + before)), 2);
+        assertThat(all).hasSize(2);
+        assertThat(all.get(0)).contains("event:created").contains("\"name\":\"Hoth\"");
+        assertThat(all.get(1)).contains("event:deleted");
+
+        // o cliente que já recebeu a criação continua do id dela e recebe só a remoção
+        String createdId = all.get(0).lines().filter(line -> line.startsWith("id:")).findFirst().orElseThrow().substring(3);
+        List<String> resumed = events(HttpRequest.newBuilder(uri("/planets/changes")).header("Last-Event-ID", createdId), 1);
+        assertThat(resumed).hasSize(1);
+        assertThat(resumed.get(0)).contains("event:deleted");
+    }
+
+    @Test
+    public void changes_SemCursor_RecebeSoAsMudancasNovas() throws Exception {
+        create("Hoth", "frozen", "tundra");
+
+        CompletableFuture<List<String>> live = CompletableFuture.supplyAsync(() -> {
+            try {
+                return events(HttpRequest.newBuilder(uri("/planets/changes")), 1);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        // espera a conexão abrir antes da escrita; o evento da escrita anterior não deve chegar
+        Thread.sleep(500);
+        create("Bespin", "temperate", "gas giant");
+
+        List<String> sut = live.get(10, TimeUnit.SECONDS);
+        assertThat(sut).hasSize(1);
+        assertThat(sut.get(0)).contains("event:created").contains("\"name\":\"Bespin\"");
+    }
+
+    @Test
+    public void changes_ComLastEventIdApagadoPelaRetencao_Retorna410() throws Exception {
+        create("Hoth", "frozen", "tundra");
+        create("Bespin", "temperate", "gas giant");
+        create("Naboo", "temperate", "grassy hills");
+        long hoth = planetService.latestChange() - 2;
+        planetService.pruneChanges(Instant.now().plusSeconds(1));
+
+        // o cliente viu Hoth e perdeu Bespin, que a retenção apagou
+        HttpResponse<String> expired = client.send(HttpRequest.newBuilder(uri("/planets/changes"))
+                .header("Last-Event-ID", String.valueOf(hoth)).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(expired.statusCode()).isEqualTo(410);
+
+        // a última mudança fica guardada, então quem está logo antes dela ainda continua
+        List<String> resumed = events(HttpRequest.newBuilder(uri("/planets/changes?after=" + (planetService.latestChange() - 1))), 1);
+        assertThat(resumed).hasSize(1);
+        assertThat(resumed.get(0)).contains("\"name\":\"Naboo\"");
+    }
+
+    private long create(String name, String climate, String terrain) throws Exception {
+        String body = objectMapper.writeValueAsString(new Planet(name, climate, terrain));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/planets"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(201);
+        return objectMapper.readValue(response.body(), Planet.class).getId();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    // lê o stream até receber count eventos; cada evento do SSE termina em uma linha vazia
+    private List<String> events(HttpRequest.Builder request, int count) throws Exception {
+        HttpResponse<InputStream> response = client.send(request.timeout(Duration.ofSeconds(10)).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.headers().firstValue("Content-Type")).get().asString().startsWith("text/event-stream");
+        List<String> events = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            StringBuilder event = new StringBuilder();
+            String line;
+            while (events.size() < count && (line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    event.append(line).append('\n');
+                } else if (!event.isEmpty()) {
+                    events.add(event.toString());
+                    event.setLength(0);
+                }
+            }
+        }
+        return events;
+    }
+}
@@ -1,31 +1,83 @@
 package com.danieloliveira.starwarsplanetapi.domain.web;
 
 import com.danieloliveira.starwarsplanetapi.domain.Planet;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetBatchResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetBatchService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetDeleteResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetExporter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFacets;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetField;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetFilter;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetListVersion;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetNameMatch;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetPage;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetProjection;
 import com.danieloliveira.starwarsplanetapi.domain.PlanetService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetUpsertResult;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetUpsertService;
+import com.danieloliveira.starwarsplanetapi.domain.PlanetsChangedEvent;
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyKeyStore;
+import com.danieloliveira.starwarsplanetapi.web.IdempotencyProperties;
+import com.danieloliveira.starwarsplanetapi.web.PlanetChangeFeed;
 import com.danieloliveira.starwarsplanetapi.web.PlanetController;
+import com.danieloliveira.starwarsplanetapi.web.PlanetListCacheProperties;
+import com.danieloliveira.starwarsplanetapi.web.PlanetListResponseCache;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static com.danieloliveira.starwarsplanetapi.common.PlanetConstants.*;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(PlanetController.class)
+@Import({PlanetListResponseCache.class, IdempotencyKeyStore.class})
+@EnableConfigurationProperties({PlanetListCacheProperties.class, IdempotencyProperties.class})
 // usada para fazer requisições http (ele injeta o controlador e monta um contexto web para interagir)
 public class PlanetControllerTest {
 
@@ -39,6 +91,42 @@ public class PlanetControllerTest {
     @MockitoBean
     private PlanetService planetService;
 
+    @MockitoBean
+    private PlanetBatchService planetBatchService;
+
+    @MockitoBean
+    private PlanetUpsertService planetUpsertService;
+
+    @MockitoBean
+    private PlanetChangeFeed planetChangeFeed;
+
+    @MockitoBean
+    private PlanetExporter planetExporter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlanetListResponseCache planetListResponseCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // o contexto é o mesmo para todos os testes, então as respostas guardadas por um teste não podem vazar para o próximo
+    @BeforeEach
+    public void setUp() {
+        planetListResponseCache.invalidateAll();
+    }
+
+    // o @WebMvcTest não sobe as métricas do actuator, então o GeneralExceptionHandler recebe um registry em memória
+    @TestConfiguration
+    static class MetricsConfiguration {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
     @Test
     public void createPlanet_ComDadosValidos_returnaCreated() throws Exception {
         when(planetService.create(PLANET)).thenReturn(PLANET);
@@ -54,6 +142,7 @@ public class PlanetControllerTest {
     public void createPlanet_ComDadosInvalidos_returnaBadRequest() throws Exception {
         Planet emptyPlanet = new Planet();
         Planet invalidPlanet = new Planet("", "", "");
+        double unprocessable = errors("422");
 
         mockMvc.perform(MockMvcRequestBuilders.post("/planets").content(objectMapper.writeValueAsString(emptyPlanet)).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
@@ -61,16 +150,165 @@ public class PlanetControllerTest {
 
         mockMvc.perform(MockMvcRequestBuilders.post("/planets").content(objectMapper.writeValueAsString(invalidPlanet)).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+
+        org.assertj.core.api.Assertions.assertThat(errors("422")).isEqualTo(unprocessable + 2);
+    }
+
+    // o store é o mesmo para todos os testes do contexto, então cada teste usa a própria chave
+    @Test
+    public void createPlanet_ComIdempotencyKeyRepetida_RetornaARespostaOriginal() throws Exception {
+        when(planetService.create(PLANET)).thenReturn(PLANET);
+        String body = objectMapper.writeValueAsString(PLANET);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-1").content(body).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Idempotent-Replayed"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-1").content(body).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().string("Idempotent-Replayed", "true"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(PLANET));
+
+        verify(planetService, times(1)).create(any());
+    }
+
+    @Test
+    public void createPlanet_ComIdempotencyKeyEOutroCorpo_RetornaUnprocessableEntity() throws Exception {
+        when(planetService.create(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-2")
+                        .content(objectMapper.writeValueAsString(PLANET)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-2")
+                        .content(objectMapper.writeValueAsString(TATOOINE)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+
+        verify(planetService, times(1)).create(any());
+    }
+
+    @Test
+    public void createPlanet_ComIdempotencyKeyEConflito_RodaORetryDeNovo() throws Exception {
+        when(planetService.create(PLANET)).thenThrow(DataIntegrityViolationException.class).thenReturn(PLANET);
+        String body = objectMapper.writeValueAsString(PLANET);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-3").content(body).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-3").content(body).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+    }
+
+    @Test
+    public void createPlanet_ComIdempotencyKeyDeOutroCliente_NaoRecebeARespostaDoPrimeiro() throws Exception {
+        when(planetService.create(PLANET)).thenReturn(PLANET);
+        String body = objectMapper.writeValueAsString(PLANET);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-4").content(body).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", "retry-4").content(body).contentType(MediaType.APPLICATION_JSON)
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.2");
+                            return request;
+                        }))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Idempotent-Replayed"));
+
+        verify(planetService, times(2)).create(any());
+    }
+
+    @Test
+    public void createPlanet_ComIdempotencyKeyVazia_RetornaBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets").header("Idempotency-Key", " ")
+                        .content(objectMapper.writeValueAsString(PLANET)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.content().string(containsString("Idempotency-Key header")));
+
+        verify(planetService, never()).create(any());
+    }
+
+    @Test
+    public void upsertPlanet_ComNomeNovo_RetornaCreated() throws Exception {
+        when(planetUpsertService.upsert(new Planet("Tatooine", "arid", "desert")))
+                .thenReturn(new PlanetUpsertResult(TATOOINE, PlanetUpsertResult.Status.CREATED));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/planets/name/Tatooine").content("{\"climate\":\"arid\",\"terrain\":\"desert\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.LOCATION, containsString("/planets/1")))
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(TATOOINE));
+    }
+
+    @Test
+    public void upsertPlanet_ComNomeExistente_RetornaOk() throws Exception {
+        when(planetUpsertService.upsert(any())).thenReturn(new PlanetUpsertResult(TATOOINE, PlanetUpsertResult.Status.UNCHANGED));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/planets/name/Tatooine").content(objectMapper.writeValueAsString(TATOOINE))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.LOCATION))
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(TATOOINE));
+    }
+
+    @Test
+    public void upsertPlanet_ComNomeDiferenteNoCorpo_RetornaBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/planets/name/Hoth").content(objectMapper.writeValueAsString(TATOOINE))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        verify(planetUpsertService, never()).upsert(any());
+        // o erro aparece na métrica como requisição inválida, não como filtro
+        org.assertj.core.api.Assertions.assertThat(meterRegistry.find("planets.errors").tag("exception", "InvalidRequestException").counter())
+                .isNotNull();
+    }
+
+    @Test
+    public void upsertPlanet_ComDadosInvalidos_RetornaUnprocessableEntity() throws Exception {
+        when(planetUpsertService.upsert(any())).thenThrow(new ConstraintViolationException(Set.of()));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/planets/name/Hoth").content("{\"climate\":\"\",\"terrain\":\"tundra\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
     }
 
     @Test
     public void criarPlaneta_ComNomeExistente_returnaConflito() throws Exception {
         when(planetService.create(any())).thenThrow(DataIntegrityViolationException.class);
+        double conflicts = errors("409");
 
         mockMvc.perform(MockMvcRequestBuilders.post("/planets")
                         .content(objectMapper.writeValueAsString(PLANET))
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isConflict());
+
+        // o contexto é reaproveitado entre os testes, então o contador é comparado com o valor de antes da requisição
+        org.assertj.core.api.Assertions.assertThat(errors("409")).isEqualTo(conflicts + 1);
+    }
+
+    @Test
+    public void createBatch_ComNdjsonOuArray_EnviaTodosOsPlanetasParaOService() throws Exception {
+        List<Planet> received = new ArrayList<>();
+        // o mock consome o Iterator como o service real faria e devolve um resultado com um item por planeta
+        when(planetBatchService.createAll(any())).thenAnswer(invocation -> {
+            Iterator<Planet> planets = invocation.getArgument(0);
+            List<PlanetBatchResult.Item> items = new ArrayList<>();
+            while (planets.hasNext()) {
+                Planet planet = planets.next();
+                received.add(planet);
+                items.add(new PlanetBatchResult.Item(items.size(), PlanetBatchResult.Status.CREATED, (long) items.size() + 1, planet.getName(), null));
+            }
+            return new PlanetBatchResult(items.size(), 0, 0, items);
+        });
+
+        String ndjson = objectMapper.writeValueAsString(TATOOINE) + "\n" + objectMapper.writeValueAsString(ALDERAAN) + "\n";
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets/batch").content(ndjson).contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items", hasSize(2)));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets/batch").content(objectMapper.writeValueAsString(PLANETS)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(3));
+
+        org.assertj.core.api.Assertions.assertThat(received).containsExactly(TATOOINE, ALDERAAN, TATOOINE, ALDERAAN, YAVINIV);
     }
 
     @Test
@@ -95,14 +333,20 @@ public class PlanetControllerTest {
 
     @Test
     public void getPlanets_ComNomeInexistente_throw404() throws Exception {
+        double notFound = errors("404");
+
         mockMvc.perform(MockMvcRequestBuilders.get("/planets/name/1"))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        org.assertj.core.api.Assertions.assertThat(errors("404")).isEqualTo(notFound + 2);
     }
 
     @Test
     public void listPlanets_ReturnsFilteredPlanets() throws Exception {
-        when(planetService.list(null, null)).thenReturn(PLANETS);
-        when(planetService.list(TATOOINE.getTerrain(), TATOOINE.getClimate())).thenReturn(List.of(TATOOINE));
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+        when(planetService.list(PlanetFilter.of(TATOOINE.getTerrain(), TATOOINE.getClimate()))).thenReturn(List.of(TATOOINE));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/planets"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
@@ -114,15 +358,358 @@ public class PlanetControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0]").value(TATOOINE));
     }
 
+    @Test
+    public void getPlanets_ComAcceptCbor_returnaPlanetaEmCbor() throws Exception {
+        when(planetService.get(1L)).thenReturn(Optional.of(PLANET));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                // o JSON do mesmo planeta tem outros bytes, então o ETag compartilhado precisa ser fraco
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, startsWith("W/")))
+                .andReturn();
+
+        org.assertj.core.api.Assertions.assertThat(new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Planet.class))
+                .isEqualTo(PLANET);
+    }
+
+    @Test
+    public void listPlanets_ComAcceptSmile_returnaListaEmSmile() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept("application/x-jackson-smile"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        List<Planet> planets = new SmileMapper().readValue(result.getResponse().getContentAsByteArray(), new TypeReference<>() {
+        });
+        org.assertj.core.api.Assertions.assertThat(planets).isEqualTo(PLANETS);
+    }
+
+    // sem Accept, ou com */*, a resposta continua em JSON
+    @Test
+    public void listPlanets_SemAccept_returnaJson() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.ALL))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void listPlanets_WithTagsAndMatch_ReturnsPlanets() throws Exception {
+        when(planetService.list(PlanetFilter.of("mountains", "temperate, tropical", PlanetFilter.Match.ANY)))
+                .thenReturn(List.of(ALDERAAN, YAVINIV));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=mountains&climate=temperate, tropical&match=any"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void listPlanets_WithInvalidMatch_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=mountains&match=some"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void listPlanets_WithFields_ReturnsOnlyThoseFields() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null), EnumSet.of(PlanetField.ID, PlanetField.NAME)))
+                .thenReturn(List.of(new PlanetProjection(1L, 0L, Map.of("id", 1L, "name", "Tatooine"))));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?fields=name, ID"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Tatooine"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].climate").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].version").doesNotExist())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"1-1-1-0\""));
+    }
+
+    @Test
+    public void listPlanets_WithFieldsAndLimit_ReturnsProjectionPage() throws Exception {
+        when(planetService.page(PlanetFilter.of(null, null), EnumSet.of(PlanetField.NAME), 0L, 1))
+                .thenReturn(new PlanetPage<>(List.of(new PlanetProjection(1L, 0L, Map.of("name", "Tatooine"))), 1L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?fields=name&limit=1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Tatooine"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").doesNotExist())
+                .andExpect(MockMvcResultMatchers.header().exists("X-Next-Cursor"));
+    }
+
+    @Test
+    public void listPlanets_WithUnknownField_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?fields=name,population"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     @Test
     public void listPlanets_ReturnsNoPlanets() throws Exception {
-        when(planetService.list(null, null)).thenReturn(Collections.emptyList());
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(Collections.emptyList());
 
         mockMvc.perform(MockMvcRequestBuilders.get("/planets"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    public void listPlanets_WithLimit_ReturnsPageAndNextCursor() throws Exception {
+        when(planetService.page(PlanetFilter.of(null, null), 0L, 2)).thenReturn(new PlanetPage<>(List.of(TATOOINE, ALDERAAN), ALDERAAN.getId()));
+        when(planetService.page(PlanetFilter.of(null, null), ALDERAAN.getId(), 2)).thenReturn(new PlanetPage<>(List.of(YAVINIV), null));
+
+        MvcResult firstPage = mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.header().string("Link", containsString("rel=\"next\"")))
+                .andReturn();
+
+        // o cursor recebido no cabeçalho é usado para buscar a próxima página
+        String cursor = firstPage.getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2&after=" + cursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0]").value(YAVINIV))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    public void listPlanets_WithInvalidCursorOrLimit_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?after=invalid"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=0"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void getPlanets_ComIfNoneMatchIgual_returnaNotModified() throws Exception {
+        when(planetService.get(1L)).thenReturn(Optional.of(TATOOINE));
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/planets/1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"1-0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // com o mesmo ETag a resposta é 304 e o planeta não é serializado
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-1\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(TATOOINE));
+    }
+
+    @Test
+    public void listPlanets_ComIfNoneMatchIgual_NaoCarregaPlanetas() throws Exception {
+        when(planetService.version(PlanetFilter.of(null, null))).thenReturn(PlanetListVersion.of(PLANETS));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.IF_NONE_MATCH, "\"3-3-6-0\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"3-3-6-0\""))
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        verify(planetService, never()).list(any());
+    }
+
+    @Test
+    public void listPlanets_ComIfNoneMatchDiferente_ReturnsPlanetsAndETag() throws Exception {
+        when(planetService.version(PlanetFilter.of(null, null))).thenReturn(PlanetListVersion.of(PLANETS));
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.IF_NONE_MATCH, "\"2-2-3-0\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().stringValues(HttpHeaders.ETAG, "W/\"3-3-6-0\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(3)));
+    }
+
+    @Test
+    public void listPlanets_ChamadoDuasVezes_ConsultaESerializaUmaVez() throws Exception {
+        when(planetService.list(PlanetFilter.of("mountains, grasslands", null))).thenReturn(List.of(ALDERAAN));
+
+        String first = mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=mountains, grasslands"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        // a ordem das tags não muda a entrada do cache
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=Grasslands,mountains"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"1-2-2-0\""))
+                .andExpect(MockMvcResultMatchers.content().json(first));
+
+        verify(planetService, times(1)).list(any());
+    }
+
+    @Test
+    public void listPlanets_AceitandoGzip_ReturnaARespostaJaComprimida() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            org.assertj.core.api.Assertions.assertThat(gzip.readAllBytes()).isEqualTo(objectMapper.writeValueAsBytes(PLANETS));
+        }
+    }
+
+    @Test
+    public void listPlanets_EmCacheComIfNoneMatchIgual_NaoConsultaOBanco() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets")).andExpect(MockMvcResultMatchers.status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.IF_NONE_MATCH, "\"3-3-6-0\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        verify(planetService, times(1)).list(any());
+        verify(planetService, never()).version(any());
+    }
+
+    @Test
+    public void listPlanets_AposUmaEscrita_CarregaDeNovo() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS, List.of(TATOOINE));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets")).andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(3)));
+
+        eventPublisher.publishEvent(new PlanetsChangedEvent(List.of(ALDERAAN.getId(), YAVINIV.getId())));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets")).andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void listPlanets_ComAcceptCbor_NaoUsaOCache() throws Exception {
+        when(planetService.list(PlanetFilter.of(null, null))).thenReturn(PLANETS);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR));
+
+        verify(planetService, times(2)).list(any());
+    }
+
+    @Test
+    public void listPlanets_WithLimitAndIfNoneMatchIgual_NaoCarregaPagina() throws Exception {
+        PlanetPage<Planet> page = new PlanetPage<>(List.of(TATOOINE, ALDERAAN), ALDERAAN.getId());
+        when(planetService.page(PlanetFilter.of(null, null), 0L, 2)).thenReturn(page);
+        when(planetService.version(PlanetFilter.of(null, null), 0L, 2)).thenReturn(PlanetListVersion.of(page));
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        verify(planetService).page(any(), eq(0L), eq(2));
+    }
+
+    @Test
+    public void listPlanets_AcceptingNdjson_StreamsPlanets() throws Exception {
+        // simula o service entregando os planetas um a um para o consumer, como o cursor do JDBC faz
+        doAnswer(invocation -> {
+            Consumer<Planet> consumer = invocation.getArgument(1);
+            PLANETS.forEach(consumer);
+            return null;
+        }).when(planetService).stream(eq(PlanetFilter.of(null, null)), any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        objectMapper.writeValueAsString(TATOOINE) + "\n"
+                                + objectMapper.writeValueAsString(ALDERAAN) + "\n"
+                                + objectMapper.writeValueAsString(YAVINIV)));
+    }
+
+    @Test
+    public void exportPlanets_SemFormat_EscreveNdjson() throws Exception {
+        exportRows(PlanetFilter.of("desert", null));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/export?terrain=desert"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("planets.ndjson")))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        objectMapper.writeValueAsString(TATOOINE) + "\n"
+                                + objectMapper.writeValueAsString(ALDERAAN) + "\n"
+                                + objectMapper.writeValueAsString(YAVINIV) + "\n"));
+    }
+
+    @Test
+    public void exportPlanets_EmCsvComGzip_ComprimeEColocaAspasNosValoresComVirgula() throws Exception {
+        exportRows(PlanetFilter.of(null, null));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/export?format=csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            org.assertj.core.api.Assertions.assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(
+                    "id,name,climate,terrain\r\n"
+                            + "1,Tatooine,arid,desert\r\n"
+                            + "2,Alderaan,temperate,\"grasslands, mountains\"\r\n"
+                            + "3,Yavin IV,\"temperate, tropical\",\"jungle, rainforests\"\r\n");
+        }
+    }
+
+    @Test
+    public void exportPlanets_EmCsvComValorQueComecaComoFormula_EscreveComoTexto() throws Exception {
+        doAnswer(invocation -> {
+            PlanetExporter.RowWriter writer = invocation.getArgument(1);
+            writer.write(1L, "=HYPERLINK(\"http://x\",\"Hoth\")", "+frozen", "-tundra, @ice caves");
+            return null;
+        }).when(planetExporter).export(eq(PlanetFilter.of(null, null)), any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/export?format=csv"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "id,name,climate,terrain\r\n"
+                                + "1,\"'=HYPERLINK(\"\"http://x\"\",\"\"Hoth\"\")\",'+frozen,\"'-tundra, @ice caves\"\r\n"));
+    }
+
+    @Test
+    public void exportPlanets_ComFormatInvalido_ReturnaBadRequest() throws Exception {
+        double invalid = invalidRequests();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/export?format=xml"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        verify(planetExporter, never()).export(any(), any());
+        org.assertj.core.api.Assertions.assertThat(invalidRequests()).isEqualTo(invalid + 1);
+    }
+
+    // simula o PlanetExporter entregando as linhas do ResultSet uma a uma
+    private void exportRows(PlanetFilter filter) throws Exception {
+        doAnswer(invocation -> {
+            PlanetExporter.RowWriter writer = invocation.getArgument(1);
+            for (Planet planet : PLANETS) {
+                writer.write(planet.getId(), planet.getName(), planet.getClimate(), planet.getTerrain());
+            }
+            return null;
+        }).when(planetExporter).export(eq(filter), any());
+    }
 
     @Test
     public void removePlanet_WithExistingId_ReturnsNoContent() throws Exception {
@@ -139,4 +726,102 @@ public class PlanetControllerTest {
         mockMvc.perform(MockMvcRequestBuilders.delete("/planets/1").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
     }
+
+    @Test
+    public void removePlanets_WithIds_ReturnsDeletedCount() throws Exception {
+        when(planetService.removeAll(Set.of(1L, 2L, 99L))).thenReturn(new PlanetDeleteResult(3, 2));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/planets?ids=1,2,99,2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.requested").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.deleted").value(2));
+    }
+
+    @Test
+    public void removePlanets_WithoutIdsOrTooManyIds_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.delete("/planets"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        String ids = String.join(",", java.util.stream.LongStream.rangeClosed(1, 1001).mapToObj(String::valueOf).toList());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/planets?ids=" + ids))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void searchPlanets_ComPrefixo_ReturnaSugestoes() throws Exception {
+        when(planetService.search("tato", 10)).thenReturn(List.of(new PlanetNameMatch(1L, "Tatooine", 0)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search?q=tato"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Tatooine"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].distance").value(0));
+    }
+
+    @Test
+    public void searchPlanets_SemTextoOuComLimiteInvalido_ReturnaBadRequest() throws Exception {
+        double invalid = invalidRequests();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search?q= "))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search?q=tato&limit=51"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        // q e limit não são filtros da listagem
+        org.assertj.core.api.Assertions.assertThat(invalidRequests()).isEqualTo(invalid + 2);
+    }
+
+    @Test
+    public void facetsPlanets_ComFiltro_ReturnaAsContagensDaTagNormalizada() throws Exception {
+        when(planetService.facets("desert", null)).thenReturn(new PlanetFacets(Map.of("arid", 2L), Map.of("desert", 2L, "rock", 1L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/facets?terrain= Desert "))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.climate.arid").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.terrain.rock").value(1));
+    }
+
+    @Test
+    public void facetsPlanets_ComMaisDeUmaTag_ReturnaBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/facets?climate=arid,temperate"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        verify(planetService, never()).facets(any(), any());
+    }
+
+    @Test
+    public void changes_ComLastEventId_ContinuaDaquelaSequence() throws Exception {
+        when(planetChangeFeed.subscribe(any())).thenAnswer(invocation -> new SseEmitter());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/changes").header("Last-Event-ID", "42"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/changes"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+
+        verify(planetChangeFeed).subscribe(42L);
+        verify(planetChangeFeed).subscribe(null);
+    }
+
+    @Test
+    public void changes_ComSequenceInvalida_ReturnaBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/changes").header("Last-Event-ID", "abc"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/changes?after=-1"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        verify(planetChangeFeed, never()).subscribe(any());
+    }
+
+    private double errors(String status) {
+        return meterRegistry.find("planets.errors").tag("status", status).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private double invalidRequests() {
+        return meterRegistry.find("planets.errors").tag("exception", "InvalidRequestException").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
 }
@@ -1,3 +1,12 @@
-INSERT INTO planets (id, name, climate, terrain) VALUES (1, 'Tatooine', 'arid', 'desert');
-INSERT INTO planets (id, name, climate, terrain) VALUES (2, 'Alderaan', 'temperate', 'grasslands, mountains');
-INSERT INTO planets (id, name, climate, terrain) VALUES (3, 'Yavin IV', 'temperate, tropical', 'jungle, rainforests');
\ No newline at end of file
+INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version, updated_at) VALUES (1, 'Tatooine', 'arid', 'desert', 'arid', 'desert', 0, CURRENT_TIMESTAMP);
+INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version, updated_at) VALUES (2, 'Alderaan', 'temperate', 'grasslands, mountains', 'temperate', 'grasslands, mountains', 0, CURRENT_TIMESTAMP);
+INSERT INTO planets (id, name, climate, terrain, climate_normalized, terrain_normalized, version, updated_at) VALUES (3, 'Yavin IV', 'temperate, tropical', 'jungle, rainforests', 'temperate, tropical', 'jungle, rainforests', 0, CURRENT_TIMESTAMP);
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (1, 'CLIMATE', 'arid');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (1, 'TERRAIN', 'desert');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (2, 'CLIMATE', 'temperate');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (2, 'TERRAIN', 'grasslands');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (2, 'TERRAIN', 'mountains');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (3, 'CLIMATE', 'temperate');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (3, 'CLIMATE', 'tropical');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (3, 'TERRAIN', 'jungle');
+INSERT INTO planet_tags (planet_id, dimension, tag) VALUES (3, 'TERRAIN', 'rainforests');
\ No newline at end of file
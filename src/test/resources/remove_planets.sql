@@ -1 +1,4 @@
-truncate table planets;
\ No newline at end of file
+DELETE FROM planet_changes;
+DELETE FROM planet_tags;
+DELETE FROM planet_facets;
+DELETE FROM planets;
\ No newline at end of file